@@ -0,0 +1,160 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+import minimization.RegexPipeline;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import automata.sfa.SFA;
+
+public class BenchmarkAutomata
+{
+	//Regex sources used by the benchmarks. Paths are relative to the project directory, as in the tests.
+	//Automata are built and filtered by a RegexPipeline, the same way as in BenchmarkRunner.
+
+	public static final String REGEXLIB = "regexlib";
+	public static final String PATTERN75 = "pattern75";
+	public static final String POWEREN = "powerEN";
+
+	public static final String REGEXLIB_FILE = "regex/regexlib-SFA.txt";
+	public static final String PATTERN75_FILE = "regex/pattern@75.txt";
+	public static final String POWEREN_ARCHIVE = "regex/PowerEN_PME_Synth_Workload_Patterns.tar.gz";
+	public static final String POWEREN_PATTERNS = "/cmplex/multi_ctx/patterns/";
+
+	public static final int MAX_STATES = 400;
+	public static final long DETERMINIZE_TIMEOUT = 3600000; //1 hour
+
+	private static final int TAR_BLOCK = 512;
+
+	public static List<String> getRegexList(String source) throws IOException
+	{
+		if (source.equals(REGEXLIB))
+		{
+			return readLines(new FileReader(REGEXLIB_FILE), false);
+		}
+		else if (source.equals(PATTERN75))
+		{
+			return readLines(new FileReader(PATTERN75_FILE), false);
+		}
+		else if (source.equals(POWEREN))
+		{
+			return readPowerEN(POWEREN_ARCHIVE);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown regex source: " + source);
+		}
+	}
+
+	public static SFA<CharPred, Character> getAutomaton(String regex, UnaryCharIntervalSolver ba)
+			throws InterruptedException
+	{
+		//Returns the determinized, total automaton of regex, or null if it can not be used in benchmarks
+		RegexPipeline pipeline = new RegexPipeline(ba);
+		pipeline.setDeterminizeTimeout(DETERMINIZE_TIMEOUT);
+		pipeline.setMaxStates(MAX_STATES);
+		RegexPipeline.Result built = pipeline.build(regex);
+		return built.isUsable() ? built.getAutomaton() : null;
+	}
+
+	private static List<String> readLines(Reader reader, boolean patternsOnly) throws IOException
+	{
+		BufferedReader read = new BufferedReader(reader);
+		ArrayList<String> regexList = new ArrayList<String>();
+		try
+		{
+			String line;
+			while((line = read.readLine()) != null)
+			{
+				if (patternsOnly && (line.equals("") || line.indexOf(" ") != -1))
+				{
+					continue; //blank or not a regex
+				}
+				regexList.add(line);
+			}
+		}
+		finally
+		{
+			read.close();
+		}
+		return regexList;
+	}
+
+	private static List<String> readPowerEN(String archive) throws IOException
+	{
+		//Reads the pattern files straight out of the tar.gz archive, in order of their names
+		TreeMap<String, List<String>> patternFiles = new TreeMap<String, List<String>>();
+		DataInputStream tar = new DataInputStream(new GZIPInputStream(new FileInputStream(archive)));
+		try
+		{
+			byte[] header = new byte[TAR_BLOCK];
+			while (true)
+			{
+				try
+				{
+					tar.readFully(header);
+				}
+				catch (EOFException e)
+				{
+					break;
+				}
+				String name = tarString(header, 0, 100);
+				if (name.isEmpty())
+				{
+					break; //end of archive marker
+				}
+				String prefix = tarString(header, 345, 155);
+				if (!prefix.isEmpty())
+				{
+					name = prefix + "/" + name;
+				}
+				long size = Long.parseLong(tarString(header, 124, 12).trim(), 8);
+				char type = (char) header[156];
+				byte[] content = new byte[(int) size];
+				tar.readFully(content);
+				long padding = (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+				tar.readFully(new byte[(int) padding]);
+				if ((type == '0' || type == 0) && name.contains(POWEREN_PATTERNS))
+				{
+					Reader reader = new InputStreamReader(new ByteArrayInputStream(content), Charset.forName("UTF-8"));
+					patternFiles.put(name, readLines(reader, true));
+				}
+			}
+		}
+		finally
+		{
+			tar.close();
+		}
+		List<String> allRegex = new ArrayList<String>();
+		for (Map.Entry<String, List<String>> patternFile : patternFiles.entrySet())
+		{
+			allRegex.addAll(patternFile.getValue());
+		}
+		return allRegex;
+	}
+
+	private static String tarString(byte[] header, int offset, int length)
+	{
+		int end = offset;
+		while (end < offset + length && header[end] != 0)
+		{
+			end++;
+		}
+		return new String(header, offset, end - offset, Charset.forName("US-ASCII"));
+	}
+}
@@ -0,0 +1,180 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import minimization.RegexPipeline;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sat4j.specs.TimeoutException;
+
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+
+public class BenchmarkRunner
+{
+	/* Usage: BenchmarkRunner <regexlib|pattern75|powerEN> <output file> [algorithm ...]
+	 * Runs MinimizationBenchmark with the gc profiler over every usable automaton of the source. The raw JMH
+	 * results go to <output file>.json. <output file> gets one row per automaton in the layout of the
+	 * compareRuntimeFromRegex results: the automaton columns first, then the average time in ms and the
+	 * normalized allocation in bytes per minimization of each algorithm. This file can be passed to
+	 * scripts/compare_data.py.
+	 */
+
+	private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+	public static void main(String[] args) throws IOException, TimeoutException, RunnerException, InterruptedException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: BenchmarkRunner <source> <output file> [algorithm ...]");
+			return;
+		}
+		String source = args[0];
+		String outfile = args[1];
+		String[] algorithms = (args.length > 2) ? Arrays.copyOfRange(args, 2, args.length)
+				: MinimizationBenchmark.ALGORITHMS;
+
+		final UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		List<String> regexList = BenchmarkAutomata.getRegexList(source);
+		final List<Integer> usable = new ArrayList<Integer>();
+		final Map<String, String> automatonColumns = new HashMap<String, String>();
+		RegexPipeline pipeline = new RegexPipeline(ba);
+		pipeline.setMaxStates(BenchmarkAutomata.MAX_STATES);
+		pipeline.run(regexList, new RegexPipeline.ResultHandler()
+		{
+			public void handle(RegexPipeline.Result built)
+			{
+				//only the columns are kept, automata are dropped as soon as they are described
+				if (!built.isUsable())
+				{
+					return;
+				}
+				try
+				{
+					automatonColumns.put(Integer.toString(built.getIndex()), describe(built.getAutomaton(), ba));
+					usable.add(built.getIndex());
+				}
+				catch (TimeoutException e)
+				{
+					//left out like any other unusable automaton
+				}
+			}
+		});
+		Collections.sort(usable);
+		List<String> indices = new ArrayList<String>();
+		for (Integer index : usable)
+		{
+			indices.add(index.toString());
+		}
+		if (indices.isEmpty())
+		{
+			System.out.println("No usable automata in " + source);
+			return;
+		}
+
+		Options opt = new OptionsBuilder()
+				.include(MinimizationBenchmark.class.getSimpleName())
+				.param("source", source)
+				.param("automaton", indices.toArray(new String[indices.size()]))
+				.param("algorithm", algorithms)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(outfile + ".json")
+				.build();
+		Collection<RunResult> results = new Runner(opt).run();
+
+		//automaton index to algorithm to {time, allocation}
+		Map<String, Map<String, double[]>> scores = new HashMap<String, Map<String, double[]>>();
+		for (RunResult result : results)
+		{
+			String index = result.getParams().getParam("automaton");
+			String algorithm = result.getParams().getParam("algorithm");
+			Map<String, double[]> automatonScores = scores.get(index);
+			if (automatonScores == null)
+			{
+				automatonScores = new HashMap<String, double[]>();
+				scores.put(index, automatonScores);
+			}
+			double alloc = Double.NaN;
+			for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet())
+			{
+				if (secondary.getKey().endsWith(ALLOC_RATE_NORM)) //key is prefixed differently across JMH versions
+				{
+					alloc = secondary.getValue().getScore();
+				}
+			}
+			automatonScores.put(algorithm, new double[]{result.getPrimaryResult().getScore(), alloc});
+		}
+
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outfile)));
+		try
+		{
+			StringBuilder header = new StringBuilder(
+					"initial states, final states, transition count, predicate count, minterm count");
+			for (String algorithm : algorithms)
+			{
+				header.append(", ").append(algorithm).append(" time");
+			}
+			for (String algorithm : algorithms)
+			{
+				header.append(", ").append(algorithm).append(" bytes/op");
+			}
+			writer.write(header.toString() + "\n");
+			for (String index : indices)
+			{
+				Map<String, double[]> automatonScores = scores.get(index);
+				if (automatonScores == null)
+				{
+					continue; //benchmark failed for this automaton
+				}
+				StringBuilder row = new StringBuilder(automatonColumns.get(index));
+				for (int column = 0; column < 2; column++)
+				{
+					for (String algorithm : algorithms)
+					{
+						double[] score = automatonScores.get(algorithm);
+						row.append(", ").append(score == null ? Double.NaN : score[column]);
+					}
+				}
+				writer.write(row.toString() + "\n");
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static String describe(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba) throws TimeoutException
+	{
+		HashSet<CharPred> predSet = new HashSet<CharPred>();
+		for(SFAInputMove<CharPred, Character> t : aut.getInputMovesFrom(aut.getStates()))
+		{
+			predSet.add(t.guard);
+		}
+		ArrayList<CharPred> predList = new ArrayList<CharPred>(predSet);
+		return String.format("%d, %d, %d, %d, %d", aut.stateCount(), aut.minimize(ba).stateCount(),
+				aut.getTransitionCount(), predSet.size(), ba.GetMinterms(predList).size());
+	}
+}
@@ -0,0 +1,149 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import minimization.DebugException;
+import minimization.HopcroftMinimization;
+import minimization.MinimizationAlgorithm;
+import minimization.MooreMinimization;
+import minimization.incremental.IncrSimpleNEQ;
+import minimization.incremental.IncrWithDependencyChecks;
+import minimization.incremental.IncrWithWitnesses;
+import minimization.incremental.IncrementalMinimization;
+import minimization.incremental.IncrementalNaive;
+import minimization.incremental.IncrementalParallel;
+import minimization.incremental.IncrementalRecWithDeps;
+import minimization.incremental.IncrementalRecursive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import automata.sfa.SFA;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MinimizationBenchmark
+{
+	//Times a full minimization (construction included) of one automaton from one regex source.
+	//automaton is an index into BenchmarkAutomata.getRegexList(source), BenchmarkRunner fills in
+	//every usable index and writes the results for scripts/compare_data.py.
+	//The benchmarks are a source folder of their own, bench, next to src. They need jmh-core and the JMH
+	//annotation processor, which are not in lib, and nothing in src depends on them.
+
+	public static final String[] ALGORITHMS = {"Standard", "Moore", "Hopcroft", "Incremental", "Naive",
+		"Recursive", "RecWithDeps", "DependencyChecks", "SharedDependencies", "Witnesses", "SimpleNEQ",
+		"Parallel"};
+
+	@Param({BenchmarkAutomata.REGEXLIB})
+	public String source;
+
+	@Param({"0"})
+	public int automaton;
+
+	@Param({"Standard", "Moore", "Hopcroft", "Incremental", "Naive", "Recursive", "RecWithDeps",
+		"DependencyChecks", "SharedDependencies", "Witnesses", "SimpleNEQ", "Parallel"})
+	public String algorithm;
+
+	private UnaryCharIntervalSolver ba;
+	private SFA<CharPred, Character> aut;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, InterruptedException
+	{
+		ba = new UnaryCharIntervalSolver();
+		String regex = BenchmarkAutomata.getRegexList(source).get(automaton);
+		aut = BenchmarkAutomata.getAutomaton(regex, ba);
+		if (aut == null)
+		{
+			throw new IllegalArgumentException("Regex can not be used for benchmarking: " + regex);
+		}
+	}
+
+	@Benchmark
+	public SFA<CharPred, Character> minimize() throws TimeoutException, DebugException
+	{
+		return minimize(algorithm, aut, ba);
+	}
+
+	public static <P,S> SFA<P,S> minimize(String algorithm, SFA<P,S> aut, BooleanAlgebra<P,S> ba)
+			throws TimeoutException, DebugException
+	{
+		if (algorithm.equals("Standard"))
+		{
+			return aut.minimize(ba);
+		}
+		return makeAlgorithm(algorithm, aut, ba).minimize();
+	}
+
+	public static <P,S> MinimizationAlgorithm<P,S> makeAlgorithm(String algorithm, SFA<P,S> aut,
+			BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		if (algorithm.equals("Moore"))
+		{
+			return new MooreMinimization<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("Hopcroft"))
+		{
+			return new HopcroftMinimization<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("Incremental"))
+		{
+			return new IncrementalMinimization<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("Naive"))
+		{
+			return new IncrementalNaive<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("Recursive"))
+		{
+			return new IncrementalRecursive<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("RecWithDeps"))
+		{
+			return new IncrementalRecWithDeps<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("DependencyChecks"))
+		{
+			return new IncrWithDependencyChecks<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("SharedDependencies"))
+		{
+			return new IncrWithDependencyChecks<P,S>(aut, ba, true);
+		}
+		else if (algorithm.equals("Witnesses"))
+		{
+			return new IncrWithWitnesses<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("SimpleNEQ"))
+		{
+			return new IncrSimpleNEQ<P,S>(aut, ba);
+		}
+		else if (algorithm.equals("Parallel"))
+		{
+			return new IncrementalParallel<P,S>(aut, ba);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown minimization algorithm: " + algorithm);
+		}
+	}
+}
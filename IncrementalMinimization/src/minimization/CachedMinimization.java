@@ -0,0 +1,34 @@
+package minimization;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+
+public class CachedMinimization<P,S> implements MinimizationAlgorithm<P,S>
+{
+	//Looks aut up in the cache before minimizing it with an algorithm made by factory
+	
+	private final SFA<P,S> aut;
+	private final MinimizationCache<P,S> cache;
+	private final MinimizationCache.AlgorithmFactory<P,S> factory;
+	private final MinimizationStats stats = new MinimizationStats();
+	
+	public CachedMinimization(SFA<P,S> aut, MinimizationCache<P,S> cache, 
+			MinimizationCache.AlgorithmFactory<P,S> factory)
+	{
+		this.aut = aut;
+		this.cache = cache;
+		this.factory = factory;
+	}
+	
+	public SFA<P,S> minimize() throws TimeoutException, DebugException
+	{
+		return cache.minimize(aut, factory, stats);
+	}
+	
+	public MinimizationStats getStats()
+	{
+		//lookup time, plus the stats of the algorithm if aut was not cached
+		return stats;
+	}
+}
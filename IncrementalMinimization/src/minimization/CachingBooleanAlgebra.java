@@ -0,0 +1,226 @@
+package minimization;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.LRUCache;
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+public class CachingBooleanAlgebra<P,S> extends BooleanAlgebra<P,S>
+{
+	/* Decorator that memoizes MkAnd, MkNot and IsSatisfiable of the wrapped algebra. Guards are looked up
+	 * by equals/hashCode, which is identity for predicate classes that do not override them. Since cached
+	 * conjunctions and negations are returned as the same objects every time, satisfiability queries on them
+	 * hit the cache in either case. Each cache is an LRU map bounded by the given capacity.
+	 * Cache accesses are synchronized but calls to the wrapped algebra are not, so sharing an instance
+	 * between threads is only safe if the wrapped algebra is.
+	 */
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private static class GuardPair //unordered, conjunction is commutative
+	{
+		private final Object first;
+		private final Object second;
+
+		public GuardPair(Object first, Object second)
+		{
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean equals(Object other)
+		{
+			if (!(other instanceof GuardPair))
+			{
+				return false;
+			}
+			GuardPair otherPair = (GuardPair) other;
+			return (first.equals(otherPair.first) && second.equals(otherPair.second)) ||
+					(first.equals(otherPair.second) && second.equals(otherPair.first));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return first.hashCode() + second.hashCode();
+		}
+	}
+
+	public static <P,S> CachingBooleanAlgebra<P,S> wrap(BooleanAlgebra<P,S> ba)
+	{
+		if (ba instanceof CachingBooleanAlgebra)
+		{
+			return (CachingBooleanAlgebra<P,S>) ba;
+		}
+		return new CachingBooleanAlgebra<P,S>(ba);
+	}
+
+	private final BooleanAlgebra<P,S> ba;
+	private final LRUCache<GuardPair, P> andCache;
+	private final LRUCache<P, P> notCache;
+	private final LRUCache<P, Boolean> satCache;
+
+	public CachingBooleanAlgebra(BooleanAlgebra<P,S> ba, int capacity)
+	{
+		this.ba = ba;
+		this.andCache = new LRUCache<GuardPair, P>(capacity);
+		this.notCache = new LRUCache<P, P>(capacity);
+		this.satCache = new LRUCache<P, Boolean>(capacity);
+	}
+
+	public CachingBooleanAlgebra(BooleanAlgebra<P,S> ba)
+	{
+		this(ba, DEFAULT_CAPACITY);
+	}
+
+	public BooleanAlgebra<P,S> getAlgebra()
+	{
+		return ba;
+	}
+
+	@Override
+	public P MkAnd(P p1, P p2) throws TimeoutException
+	{
+		GuardPair key = new GuardPair(p1, p2);
+		P result;
+		synchronized (andCache)
+		{
+			result = andCache.get(key);
+		}
+		if (result == null)
+		{
+			result = ba.MkAnd(p1, p2);
+			synchronized (andCache)
+			{
+				andCache.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public P MkNot(P p) throws TimeoutException
+	{
+		P result;
+		synchronized (notCache)
+		{
+			result = notCache.get(p);
+		}
+		if (result == null)
+		{
+			result = ba.MkNot(p);
+			synchronized (notCache)
+			{
+				notCache.put(p, result);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean IsSatisfiable(P p) throws TimeoutException
+	{
+		Boolean result;
+		synchronized (satCache)
+		{
+			result = satCache.get(p);
+		}
+		if (result == null)
+		{
+			result = ba.IsSatisfiable(p);
+			synchronized (satCache)
+			{
+				satCache.put(p, result);
+			}
+		}
+		return result;
+	}
+
+	public void clear()
+	{
+		synchronized (andCache)
+		{
+			andCache.clear();
+		}
+		synchronized (notCache)
+		{
+			notCache.clear();
+		}
+		synchronized (satCache)
+		{
+			satCache.clear();
+		}
+	}
+
+	//remaining operations are passed straight through
+
+	@Override
+	public P MkAtom(S s)
+	{
+		return ba.MkAtom(s);
+	}
+
+	@Override
+	public P MkOr(Collection<P> pset) throws TimeoutException
+	{
+		return ba.MkOr(pset);
+	}
+
+	@Override
+	public P MkOr(P p1, P p2) throws TimeoutException
+	{
+		return ba.MkOr(p1, p2);
+	}
+
+	@Override
+	public P MkAnd(Collection<P> pset) throws TimeoutException
+	{
+		return ba.MkAnd(pset);
+	}
+
+	@Override
+	public P True()
+	{
+		return ba.True();
+	}
+
+	@Override
+	public P False()
+	{
+		return ba.False();
+	}
+
+	@Override
+	public boolean AreEquivalent(P p1, P p2) throws TimeoutException
+	{
+		return ba.AreEquivalent(p1, p2);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el) throws TimeoutException
+	{
+		return ba.HasModel(p1, el);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el1, S el2) throws TimeoutException
+	{
+		return ba.HasModel(p1, el1, el2);
+	}
+
+	@Override
+	public S generateWitness(P p1) throws TimeoutException
+	{
+		return ba.generateWitness(p1);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(P p1) throws TimeoutException
+	{
+		return ba.generateWitnesses(p1);
+	}
+}
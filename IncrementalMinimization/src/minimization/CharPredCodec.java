@@ -0,0 +1,61 @@
+package minimization;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+
+public class CharPredCodec implements GuardCodec<CharPred>
+{
+	//Encodes a CharPred as its intervals, given as pairs of character codes: "97-122,48-57". False is "-".
+	
+	private final BooleanAlgebra<CharPred, Character> ba;
+	
+	public CharPredCodec(BooleanAlgebra<CharPred, Character> ba)
+	{
+		this.ba = ba;
+	}
+	
+	public String encode(CharPred guard)
+	{
+		if (guard.intervals.isEmpty())
+		{
+			return "-";
+		}
+		StringBuilder encoded = new StringBuilder();
+		for (ImmutablePair<Character, Character> interval : guard.intervals)
+		{
+			if (encoded.length() > 0)
+			{
+				encoded.append(',');
+			}
+			encoded.append((int) interval.getLeft()).append('-').append((int) interval.getRight());
+		}
+		return encoded.toString();
+	}
+	
+	public CharPred decode(String encoded)
+	{
+		CharPred guard = ba.False();
+		if (encoded.equals("-"))
+		{
+			return guard;
+		}
+		try
+		{
+			for (String interval : encoded.split(","))
+			{
+				String[] bounds = interval.split("-");
+				char bottom = (char) Integer.parseInt(bounds[0]);
+				char top = (char) Integer.parseInt(bounds[1]);
+				guard = ba.MkOr(guard, new CharPred(bottom, top));
+			}
+		}
+		catch (TimeoutException e)
+		{
+			throw new IllegalArgumentException("Could not decode guard: " + encoded, e);
+		}
+		return guard;
+	}
+}
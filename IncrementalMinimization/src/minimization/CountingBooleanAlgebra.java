@@ -0,0 +1,130 @@
+package minimization;
+
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+public class CountingBooleanAlgebra<P,S> extends BooleanAlgebra<P,S>
+{
+	/* Decorator that counts the MkAnd, MkNot and IsSatisfiable calls made to the wrapped algebra in stats.
+	 * Calls are counted whether or not a cache below answers them, so the counts show how often an
+	 * algorithm asks, not how often the solver is run.
+	 */
+
+	public static <P,S> CountingBooleanAlgebra<P,S> wrap(BooleanAlgebra<P,S> ba, MinimizationStats stats)
+	{
+		//Counts on top of a caching algebra. A counting algebra passed in, e.g. by an algorithm handing its
+		//algebra to another, is replaced so calls are not counted twice but its cache is still shared.
+		if (ba instanceof CountingBooleanAlgebra)
+		{
+			ba = ((CountingBooleanAlgebra<P,S>) ba).getAlgebra();
+		}
+		return new CountingBooleanAlgebra<P,S>(CachingBooleanAlgebra.wrap(ba), stats);
+	}
+
+	private final BooleanAlgebra<P,S> ba;
+	private final MinimizationStats stats;
+
+	public CountingBooleanAlgebra(BooleanAlgebra<P,S> ba, MinimizationStats stats)
+	{
+		this.ba = ba;
+		this.stats = stats;
+	}
+
+	public BooleanAlgebra<P,S> getAlgebra()
+	{
+		return ba;
+	}
+
+	@Override
+	public P MkAnd(P p1, P p2) throws TimeoutException
+	{
+		stats.andCall();
+		return ba.MkAnd(p1, p2);
+	}
+
+	@Override
+	public P MkNot(P p) throws TimeoutException
+	{
+		stats.notCall();
+		return ba.MkNot(p);
+	}
+
+	@Override
+	public boolean IsSatisfiable(P p) throws TimeoutException
+	{
+		stats.satCall();
+		return ba.IsSatisfiable(p);
+	}
+
+	//remaining operations are passed straight through
+
+	@Override
+	public P MkAtom(S s)
+	{
+		return ba.MkAtom(s);
+	}
+
+	@Override
+	public P MkOr(Collection<P> pset) throws TimeoutException
+	{
+		return ba.MkOr(pset);
+	}
+
+	@Override
+	public P MkOr(P p1, P p2) throws TimeoutException
+	{
+		return ba.MkOr(p1, p2);
+	}
+
+	@Override
+	public P MkAnd(Collection<P> pset) throws TimeoutException
+	{
+		return ba.MkAnd(pset);
+	}
+
+	@Override
+	public P True()
+	{
+		return ba.True();
+	}
+
+	@Override
+	public P False()
+	{
+		return ba.False();
+	}
+
+	@Override
+	public boolean AreEquivalent(P p1, P p2) throws TimeoutException
+	{
+		return ba.AreEquivalent(p1, p2);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el) throws TimeoutException
+	{
+		return ba.HasModel(p1, el);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el1, S el2) throws TimeoutException
+	{
+		return ba.HasModel(p1, el1, el2);
+	}
+
+	@Override
+	public S generateWitness(P p1) throws TimeoutException
+	{
+		return ba.generateWitness(p1);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(P p1) throws TimeoutException
+	{
+		return ba.generateWitnesses(p1);
+	}
+}
@@ -0,0 +1,9 @@
+package minimization;
+
+public interface GuardCodec <P>
+{
+	//Text form of guards, equal guards must be encoded the same and encodings may not contain whitespace
+	public String encode(P guard);
+	
+	public P decode(String encoded);
+}
@@ -0,0 +1,251 @@
+package minimization;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.BlockPartition;
+import structures.CompiledSFA;
+import theory.BooleanAlgebra;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+
+
+public class HopcroftMinimization<P,S> implements MinimizationAlgorithm<P,S>
+{
+	/* Symbolic version of Hopcroft's partition refinement, following D'Antoni and Veanes, "Minimization of
+	 * Symbolic Automata". Starting from final and non-final states, a splitter block R is taken from the
+	 * worklist and every state p gets the guard gamma(p), the disjunction of its guards into R. A block is
+	 * split as long as two of its states have inequivalent gammas, by whether their gamma contains a witness
+	 * of the difference. Only the smaller half of a split block is added to the worklist, unless the block
+	 * was already waiting.
+	 */
+
+	public static <P,S> SFA<P,S> hopcroftMinimize(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		HopcroftMinimization<P,S> hopcroft = new HopcroftMinimization<P,S>(aut, ba);
+		return hopcroft.minimize();
+	}
+
+	private SFA<P,S> aut;
+	private BooleanAlgebra<P,S> ba;
+	private final MinimizationStats stats;
+
+	private CompiledSFA<P,S> compiled;
+	private BlockPartition partition;
+	private ArrayDeque<Integer> worklist;
+	private boolean[] inWorklist;
+	private P[] gamma; //guard from each state into the current splitter, null if there is none
+	private long deadline = Long.MAX_VALUE;
+
+	public HopcroftMinimization(SFA<P,S> aut, BooleanAlgebra<P,S> ba)
+	{
+		this.aut = aut;
+		this.stats = new MinimizationStats();
+		this.ba = CountingBooleanAlgebra.wrap(ba, stats);
+	}
+
+	public MinimizationStats getStats()
+	{
+		return stats;
+	}
+
+	private void addSplit(int block, int newBlock)
+	{
+		if (inWorklist[block])
+		{
+			inWorklist[newBlock] = true;
+			worklist.add(newBlock);
+		}
+		else
+		{
+			int smaller = (partition.blockSize(newBlock) <= partition.blockSize(block)) ? newBlock : block;
+			inWorklist[smaller] = true;
+			worklist.add(smaller);
+		}
+	}
+
+	private P gammaOf(int state)
+	{
+		return (gamma[state] == null) ? ba.False() : gamma[state];
+	}
+
+	private void refine(int block) throws TimeoutException
+	{
+		//splits block until all of its states have equivalent gammas
+		ArrayDeque<Integer> blocks = new ArrayDeque<Integer>();
+		blocks.add(block);
+		while (!blocks.isEmpty())
+		{
+			int current = blocks.remove();
+			int first = partition.first(current);
+			P psi = gammaOf(first);
+			for (int i = partition.blockStart(current) + 1; i < partition.blockEnd(current); i++)
+			{
+				int state = partition.elementAt(i);
+				if (gamma[state] == gamma[first])
+				{
+					continue;
+				}
+				P phi = gammaOf(state);
+				P difference = ba.MkOr(ba.MkAnd(phi, ba.MkNot(psi)), ba.MkAnd(psi, ba.MkNot(phi)));
+				if (!ba.IsSatisfiable(difference))
+				{
+					continue;
+				}
+				S witness = ba.generateWitness(difference);
+				for (int j = partition.blockStart(current); j < partition.blockEnd(current); j++)
+				{
+					int member = partition.elementAt(j);
+					if (gamma[member] != null && ba.HasModel(gamma[member], witness))
+					{
+						partition.mark(member);
+					}
+				}
+				int newBlock = partition.splitMarked(current);
+				assert(newBlock >= 0);
+				addSplit(current, newBlock);
+				blocks.add(current);
+				blocks.add(newBlock);
+				break;
+			}
+		}
+	}
+
+	private void split(int splitter) throws TimeoutException
+	{
+		//gammas are computed for all predecessors before any block, the splitter included, is refined
+		LinkedList<Integer> sources = new LinkedList<Integer>();
+		for (int i = partition.blockStart(splitter); i < partition.blockEnd(splitter); i++)
+		{
+			int r = partition.elementAt(i);
+			for (int t = compiled.incomingStart(r); t < compiled.incomingEnd(r); t++)
+			{
+				int p = compiled.source(t);
+				if (gamma[p] != null)
+				{
+					continue;
+				}
+				sources.add(p);
+				for (int m = compiled.movesStart(p); m < compiled.movesEnd(p); m++)
+				{
+					if (partition.blockOf(compiled.target(m)) == splitter)
+					{
+						P guard = compiled.guard(m);
+						gamma[p] = (gamma[p] == null) ? guard : ba.MkOr(gamma[p], guard);
+					}
+				}
+			}
+		}
+		HashSet<Integer> touchedBlocks = new HashSet<Integer>();
+		for (int p : sources)
+		{
+			touchedBlocks.add(partition.blockOf(p));
+		}
+		for (int block : touchedBlocks)
+		{
+			refine(block);
+		}
+		for (int p : sources)
+		{
+			gamma[p] = null;
+		}
+	}
+
+	public SFA<P,S> minimize(long budget) throws TimeoutException
+	{
+		//throws a TimeoutException once budget ns have passed, checked before every splitter
+		long start = System.nanoTime();
+		deadline = (budget > 0 && start + budget < start) ? Long.MAX_VALUE : start + budget; //may overflow
+		try
+		{
+			return minimize();
+		}
+		finally
+		{
+			deadline = Long.MAX_VALUE;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public SFA<P,S> minimize() throws TimeoutException
+	{
+		if(aut.isEmpty())
+		{
+			return SFA.getEmptySFA(ba);
+		}
+		long phaseStart = System.nanoTime();
+		if (!aut.isDeterministic())
+		{
+			aut = aut.determinize(ba);
+		}
+		aut = aut.mkTotal(ba);
+		compiled = new CompiledSFA<P,S>(aut);
+		int stateCount = compiled.stateCount();
+		partition = new BlockPartition(stateCount);
+		worklist = new ArrayDeque<Integer>();
+		inWorklist = new boolean[stateCount];
+		gamma = (P[]) new Object[stateCount];
+		for (int state = 0; state < stateCount; state++)
+		{
+			if (compiled.isFinal(state))
+			{
+				partition.mark(state);
+			}
+		}
+		int newBlock = partition.splitMarked(0);
+		if (newBlock >= 0)
+		{
+			//splitting by either block gives the same result on a total automaton, the smaller one is enough
+			inWorklist[newBlock] = true;
+			worklist.add(newBlock);
+		}
+		stats.addPhaseTime("hopcroft setup", System.nanoTime() - phaseStart);
+		phaseStart = System.nanoTime();
+		while (!worklist.isEmpty())
+		{
+			if (System.nanoTime() > deadline)
+			{
+				throw new TimeoutException("Hopcroft minimization exceeded its budget");
+			}
+			int splitter = worklist.remove();
+			inWorklist[splitter] = false;
+			split(splitter);
+		}
+		stats.addPhaseTime("hopcroft refine", System.nanoTime() - phaseStart);
+		phaseStart = System.nanoTime();
+
+		//each block is represented by its smallest state, states are visited in ascending order
+		Integer[] representative = new Integer[partition.blockCount()];
+		Collection<Integer> newFinalStates = new HashSet<Integer>();
+		for (int state = 0; state < stateCount; state++)
+		{
+			int block = partition.blockOf(state);
+			if (representative[block] == null)
+			{
+				representative[block] = compiled.stateAt(state);
+				if (compiled.isFinal(state))
+				{
+					newFinalStates.add(representative[block]);
+				}
+			}
+		}
+		Collection<SFAMove<P, S>> newTransitions = new LinkedList<SFAMove<P, S>>();
+		for (int block = 0; block < partition.blockCount(); block++)
+		{
+			int state = compiled.indexOf(representative[block]);
+			for (int m = compiled.movesStart(state); m < compiled.movesEnd(state); m++)
+			{
+				Integer to = representative[partition.blockOf(compiled.target(m))];
+				newTransitions.add(new SFAInputMove<P,S>(representative[block], to, compiled.guard(m)));
+			}
+		}
+		Integer newInitialState = representative[partition.blockOf(compiled.getInitialState())];
+		SFA<P,S> minAut = SFA.MkSFA(newTransitions, newInitialState, newFinalStates, ba);
+		stats.addPhaseTime("hopcroft merge", System.nanoTime() - phaseStart);
+		return minAut;
+	}
+}
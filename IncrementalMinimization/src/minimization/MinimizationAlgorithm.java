@@ -7,4 +7,6 @@ import automata.sfa.SFA;
 public interface MinimizationAlgorithm <P,S>
 {
 	public SFA<P,S> minimize() throws TimeoutException, DebugException;
+	
+	public MinimizationStats getStats();
 }
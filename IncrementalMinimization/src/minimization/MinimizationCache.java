@@ -0,0 +1,339 @@
+package minimization;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.LRUCache;
+import theory.BooleanAlgebra;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+
+public class MinimizationCache<P,S>
+{
+	/* Cache of minimized automata, keyed by a canonical hash of the determinized, total automaton. States
+	 * are numbered in breadth first order from the initial state, following the moves of each state in
+	 * order of their encoded guards, so automata that only differ in their state ids get the same key.
+	 * Found automata are kept in an LRU map and, if a directory is given, written to <key>.sfa files there
+	 * so they survive restarts. A hit returns the cached automaton, whose state ids may differ from those a
+	 * new minimization would give.
+	 */
+
+	public interface AlgorithmFactory<P,S>
+	{
+		//only called on a miss, so a hit skips constructing the algorithm as well
+		public MinimizationAlgorithm<P,S> make(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException;
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String FILE_SUFFIX = ".sfa";
+
+	private final BooleanAlgebra<P,S> ba;
+	private final GuardCodec<P> codec;
+	private final LRUCache<String, SFA<P,S>> memory;
+	private final File directory; //null if there is no disk tier
+	private int memoryHits = 0;
+	private int diskHits = 0;
+	private int misses = 0;
+
+	public MinimizationCache(BooleanAlgebra<P,S> ba, GuardCodec<P> codec, int capacity, File directory)
+			throws IOException
+	{
+		this.ba = ba;
+		this.codec = codec;
+		this.memory = new LRUCache<String, SFA<P,S>>(capacity);
+		this.directory = directory;
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Could not create cache directory " + directory);
+		}
+	}
+
+	public MinimizationCache(BooleanAlgebra<P,S> ba, GuardCodec<P> codec, int capacity) throws IOException
+	{
+		this(ba, codec, capacity, null);
+	}
+
+	public SFA<P,S> minimize(SFA<P,S> aut, AlgorithmFactory<P,S> factory) throws TimeoutException, DebugException
+	{
+		return minimize(aut, factory, new MinimizationStats());
+	}
+
+	public SFA<P,S> minimize(SFA<P,S> aut, AlgorithmFactory<P,S> factory, MinimizationStats stats)
+			throws TimeoutException, DebugException
+	{
+		//stats gets the time spent finding aut in the cache and, on a miss, the stats of the algorithm
+		long lookupStart = System.nanoTime();
+		if (!aut.isDeterministic())
+		{
+			aut = aut.determinize(ba);
+		}
+		aut = aut.mkTotal(ba);
+		String key = canonicalKey(aut);
+		SFA<P,S> minAut;
+		synchronized (memory)
+		{
+			minAut = memory.get(key);
+		}
+		if (minAut != null)
+		{
+			countHit(true);
+			stats.addPhaseTime("cache lookup", System.nanoTime() - lookupStart);
+			return minAut;
+		}
+		minAut = readFromDisk(key);
+		stats.addPhaseTime("cache lookup", System.nanoTime() - lookupStart);
+		if (minAut != null)
+		{
+			countHit(false);
+		}
+		else
+		{
+			countMiss();
+			MinimizationAlgorithm<P,S> algorithm = factory.make(aut, ba);
+			minAut = algorithm.minimize();
+			stats.addAll(algorithm.getStats());
+			writeToDisk(key, minAut);
+		}
+		synchronized (memory)
+		{
+			memory.put(key, minAut);
+		}
+		return minAut;
+	}
+
+	public String canonicalKey(SFA<P,S> aut)
+	{
+		//aut is expected to be deterministic, otherwise the move order of a state is not canonical
+		HashMap<Integer, Integer> canonicalIds = new HashMap<Integer, Integer>();
+		List<Integer> stateOrder = new ArrayList<Integer>();
+		canonicalIds.put(aut.getInitialState(), 0);
+		stateOrder.add(aut.getInitialState());
+		StringBuilder form = new StringBuilder();
+		for (int i = 0; i < stateOrder.size(); i++)
+		{
+			Integer state = stateOrder.get(i);
+			form.append(aut.isFinalState(state) ? 'F' : 'N');
+			final HashMap<SFAInputMove<P,S>, String> guards = new HashMap<SFAInputMove<P,S>, String>();
+			List<SFAInputMove<P,S>> moves = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(state));
+			for (SFAInputMove<P,S> move : moves)
+			{
+				guards.put(move, codec.encode(move.guard));
+			}
+			Collections.sort(moves, new Comparator<SFAInputMove<P,S>>()
+			{
+				public int compare(SFAInputMove<P,S> a, SFAInputMove<P,S> b)
+				{
+					return guards.get(a).compareTo(guards.get(b));
+				}
+			});
+			for (SFAInputMove<P,S> move : moves)
+			{
+				Integer target = canonicalIds.get(move.to);
+				if (target == null)
+				{
+					target = stateOrder.size();
+					canonicalIds.put(move.to, target);
+					stateOrder.add(move.to);
+				}
+				form.append(' ').append(guards.get(move)).append('>').append(target);
+			}
+			form.append('\n');
+		}
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(form.toString().getBytes(UTF8));
+			StringBuilder key = new StringBuilder();
+			for (byte b : digest)
+			{
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is not available", e); //required of every Java platform
+		}
+	}
+
+	private SFA<P,S> readFromDisk(String key) throws TimeoutException
+	{
+		//File layout: "initial <id>", then "final <id> ...", then one "move <from> <to> <guard>" line per move.
+		//Unreadable files count as misses and are overwritten.
+		if (directory == null)
+		{
+			return null;
+		}
+		File file = new File(directory, key + FILE_SUFFIX);
+		if (!file.isFile())
+		{
+			return null;
+		}
+		Integer initialState = null;
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		Collection<SFAMove<P,S>> transitions = new LinkedList<SFAMove<P,S>>();
+		try
+		{
+			BufferedReader read = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+			try
+			{
+				String line;
+				while ((line = read.readLine()) != null)
+				{
+					String[] fields = line.split(" ");
+					if (fields[0].equals("initial"))
+					{
+						initialState = Integer.parseInt(fields[1]);
+					}
+					else if (fields[0].equals("final"))
+					{
+						for (int i = 1; i < fields.length; i++)
+						{
+							finalStates.add(Integer.parseInt(fields[i]));
+						}
+					}
+					else if (fields[0].equals("move"))
+					{
+						transitions.add(new SFAInputMove<P,S>(Integer.parseInt(fields[1]),
+								Integer.parseInt(fields[2]), codec.decode(fields[3])));
+					}
+				}
+			}
+			finally
+			{
+				read.close();
+			}
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (RuntimeException e)
+		{
+			return null; //malformed file
+		}
+		if (initialState == null)
+		{
+			return null;
+		}
+		return SFA.MkSFA(transitions, initialState, finalStates, ba, false);
+	}
+
+	private void writeToDisk(String key, SFA<P,S> minAut)
+	{
+		//written to a temporary file first, so readers never see a partly written automaton
+		if (directory == null)
+		{
+			return;
+		}
+		File temp = null;
+		try
+		{
+			temp = File.createTempFile(key, ".tmp", directory);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF8));
+			try
+			{
+				writer.write("initial " + minAut.getInitialState() + "\n");
+				StringBuilder finalLine = new StringBuilder("final");
+				for (Integer state : minAut.getFinalStates())
+				{
+					finalLine.append(' ').append(state);
+				}
+				writer.write(finalLine.append('\n').toString());
+				for (Integer state : minAut.getStates())
+				{
+					for (SFAInputMove<P,S> move : minAut.getInputMovesFrom(state))
+					{
+						writer.write("move " + move.from + " " + move.to + " " + codec.encode(move.guard) + "\n");
+					}
+				}
+			}
+			finally
+			{
+				writer.close();
+			}
+			Path file = new File(directory, key + FILE_SUFFIX).toPath();
+			try
+			{
+				Files.move(temp.toPath(), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e)
+			{
+				Files.move(temp.toPath(), file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException e)
+		{
+			//the disk tier is only an optimization, the result is still kept in memory
+			if (temp != null)
+			{
+				temp.delete();
+			}
+		}
+	}
+
+	private synchronized void countHit(boolean inMemory)
+	{
+		if (inMemory)
+		{
+			memoryHits++;
+		}
+		else
+		{
+			diskHits++;
+		}
+	}
+
+	private synchronized void countMiss()
+	{
+		misses++;
+	}
+
+	public synchronized int getMemoryHits()
+	{
+		return memoryHits;
+	}
+
+	public synchronized int getDiskHits()
+	{
+		return diskHits;
+	}
+
+	public synchronized int getMisses()
+	{
+		return misses;
+	}
+
+	public void clear()
+	{
+		//empties the memory tier only
+		synchronized (memory)
+		{
+			memory.clear();
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package minimization;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MinimizationStats
+{
+	/* Counters and phase times filled in by a minimization algorithm as it runs. Counters are atomic so
+	 * parallel algorithms can share one instance. Algebra calls are counted by CountingBooleanAlgebra, as
+	 * made by the algorithm, before they reach its cache. Not every algorithm has every counter, Moore and
+	 * Hopcroft for example run no equivalence tests. Phase times are wall times in ns, summed over all
+	 * runs of a phase, in the order the phases first ran. The budget overrun is the ns by which runs that
+	 * ran out of time budget ended after their deadline, summed like the phase times.
+	 */
+
+	private final AtomicLong pairsTested = new AtomicLong();
+	private final AtomicLong equivTestsPassed = new AtomicLong();
+	private final AtomicLong equivTestsFailed = new AtomicLong();
+	private final AtomicLong satCalls = new AtomicLong();
+	private final AtomicLong andCalls = new AtomicLong();
+	private final AtomicLong notCalls = new AtomicLong();
+	private final AtomicLong unions = new AtomicLong();
+	private final AtomicLong neqHits = new AtomicLong();
+	private final AtomicLong depthSum = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final AtomicLong budgetOverrun = new AtomicLong();
+	private final LinkedHashMap<String, Long> phaseTimes = new LinkedHashMap<String, Long>();
+
+	public void pairTested()
+	{
+		pairsTested.incrementAndGet();
+	}
+
+	public void equivTest(boolean passed, int depth)
+	{
+		//depth is the largest number of pairs on the stack during the test
+		if (passed)
+		{
+			equivTestsPassed.incrementAndGet();
+		}
+		else
+		{
+			equivTestsFailed.incrementAndGet();
+		}
+		depthSum.addAndGet(depth);
+		int max = maxDepth.get();
+		while (depth > max && !maxDepth.compareAndSet(max, depth))
+		{
+			max = maxDepth.get();
+		}
+	}
+
+	public void satCall()
+	{
+		satCalls.incrementAndGet();
+	}
+
+	public void andCall()
+	{
+		andCalls.incrementAndGet();
+	}
+
+	public void notCall()
+	{
+		notCalls.incrementAndGet();
+	}
+
+	public void union()
+	{
+		unions.incrementAndGet();
+	}
+
+	public void addUnions(int count)
+	{
+		unions.addAndGet(count);
+	}
+
+	public void neqHit()
+	{
+		neqHits.incrementAndGet();
+	}
+
+	public void budgetOverrun(long nanos)
+	{
+		budgetOverrun.addAndGet(nanos);
+	}
+
+	public void addPhaseTime(String phase, long nanos)
+	{
+		synchronized (phaseTimes)
+		{
+			Long time = phaseTimes.get(phase);
+			phaseTimes.put(phase, (time == null) ? nanos : time + nanos);
+		}
+	}
+
+	public void addAll(MinimizationStats other)
+	{
+		//adds the counters and phase times of other, e.g. to sum up the stats of many automata
+		pairsTested.addAndGet(other.getPairsTested());
+		equivTestsPassed.addAndGet(other.getEquivTestsPassed());
+		equivTestsFailed.addAndGet(other.getEquivTestsFailed());
+		satCalls.addAndGet(other.getSatCalls());
+		andCalls.addAndGet(other.getAndCalls());
+		notCalls.addAndGet(other.getNotCalls());
+		unions.addAndGet(other.getUnions());
+		neqHits.addAndGet(other.getNeqHits());
+		depthSum.addAndGet(other.depthSum.get());
+		budgetOverrun.addAndGet(other.getBudgetOverrun());
+		int otherMax = other.getMaxDepth();
+		int max = maxDepth.get();
+		while (otherMax > max && !maxDepth.compareAndSet(max, otherMax))
+		{
+			max = maxDepth.get();
+		}
+		for (Map.Entry<String, Long> phase : other.getPhaseTimes().entrySet())
+		{
+			addPhaseTime(phase.getKey(), phase.getValue());
+		}
+	}
+
+	public long getPairsTested()
+	{
+		return pairsTested.get();
+	}
+
+	public long getEquivTestsPassed()
+	{
+		return equivTestsPassed.get();
+	}
+
+	public long getEquivTestsFailed()
+	{
+		return equivTestsFailed.get();
+	}
+
+	public long getSatCalls()
+	{
+		return satCalls.get();
+	}
+
+	public long getAndCalls()
+	{
+		return andCalls.get();
+	}
+
+	public long getNotCalls()
+	{
+		return notCalls.get();
+	}
+
+	public long getUnions()
+	{
+		return unions.get();
+	}
+
+	public long getNeqHits()
+	{
+		return neqHits.get();
+	}
+
+	public int getMaxDepth()
+	{
+		return maxDepth.get();
+	}
+
+	public double getAverageDepth()
+	{
+		long tests = getEquivTestsPassed() + getEquivTestsFailed();
+		return (tests == 0) ? 0 : ((double) depthSum.get())/tests;
+	}
+
+	public long getBudgetOverrun()
+	{
+		return budgetOverrun.get();
+	}
+
+	public LinkedHashMap<String, Long> getPhaseTimes()
+	{
+		synchronized (phaseTimes)
+		{
+			return new LinkedHashMap<String, Long>(phaseTimes);
+		}
+	}
+
+	public String toString()
+	{
+		StringBuilder stats = new StringBuilder();
+		stats.append(String.format("pairs tested: %d%n", getPairsTested()));
+		stats.append(String.format("equivalence tests passed: %d, failed: %d%n", getEquivTestsPassed(),
+				getEquivTestsFailed()));
+		stats.append(String.format("stack depth max: %d, average: %.2f%n", getMaxDepth(), getAverageDepth()));
+		stats.append(String.format("IsSatisfiable: %d, MkAnd: %d, MkNot: %d%n", getSatCalls(), getAndCalls(),
+				getNotCalls()));
+		stats.append(String.format("unions: %d, neq hits: %d%n", getUnions(), getNeqHits()));
+		if (getBudgetOverrun() > 0)
+		{
+			stats.append(String.format("budget overrun: %f ms%n", getBudgetOverrun()/1000000.0));
+		}
+		for (Map.Entry<String, Long> phase : getPhaseTimes().entrySet())
+		{
+			stats.append(String.format("%s: %f ms%n", phase.getKey(), phase.getValue()/1000000.0));
+		}
+		return stats.toString();
+	}
+}
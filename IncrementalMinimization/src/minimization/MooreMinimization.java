@@ -1,13 +1,12 @@
 package minimization;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
 
+import structures.CompiledSFA;
+import structures.TriangularBitMatrix;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
@@ -24,25 +23,18 @@ public class MooreMinimization<P,S> implements MinimizationAlgorithm<P,S>
 	
 	private SFA<P,S> aut;
 	private BooleanAlgebra<P,S> ba;
+	private final MinimizationStats stats;
 
 	public MooreMinimization(SFA<P,S> aut, BooleanAlgebra<P,S> ba)
 	{
 		this.aut = aut;
-		this.ba = ba;
+		this.stats = new MinimizationStats();
+		this.ba = CountingBooleanAlgebra.wrap(ba, stats);
 	}
 	
-	private List<Integer> normalize(Integer p, Integer q)
+	public MinimizationStats getStats()
 	{
-		List<Integer> pair;
-		if(p<q)
-		{
-			pair = Arrays.asList(p,q);
-		}
-		else
-		{
-			pair = Arrays.asList(q,p);
-		}
-		return pair;
+		return stats;
 	}
 	
 	public SFA<P,S> minimize() throws TimeoutException
@@ -51,106 +43,110 @@ public class MooreMinimization<P,S> implements MinimizationAlgorithm<P,S>
 		{
 			return SFA.getEmptySFA(ba);
 		}
+		long phaseStart = System.nanoTime();
 		if (!aut.isDeterministic())
 		{
 			aut = aut.determinize(ba);
 		}
 		aut = aut.mkTotal(ba);
-		int normalizeStateCount = (aut.stateCount()*aut.stateCount())/2;
-		HashSet<List<Integer>> neq = new HashSet<List<Integer>>(normalizeStateCount);
-		for (Integer p : aut.getFinalStates())
+		CompiledSFA<P,S> compiled = new CompiledSFA<P,S>(aut);
+		int stateCount = compiled.stateCount();
+		TriangularBitMatrix neq = new TriangularBitMatrix(stateCount); //pairs of dense indices
+		for (int q = 1; q < stateCount; q++)
 		{
-			for (Integer q : aut.getNonFinalStates())
+			for (int p = 0; p < q; p++)
 			{
-				neq.add(normalize(p,q));
+				if (compiled.isFinal(p) != compiled.isFinal(q))
+				{
+					neq.set(p, q);
+				}
 			}
 		}
-		boolean equivChanged = true;
-		while(equivChanged)
+		TriangularBitMatrix pending = new TriangularBitMatrix(neq); //distinguishable pairs whose predecessors are unchecked
+		stats.addPhaseTime("moore setup", System.nanoTime() - phaseStart);
+		phaseStart = System.nanoTime();
+		//A pair is distinguishable iff it has overlapping moves into a distinguishable pair. Instead of
+		//sweeping all pairs until nothing changes, each new distinguishable pair marks the pairs with
+		//overlapping moves into it, found through the incoming moves of its states. Pending pairs are
+		//scanned in index order, wrapping around until none are left.
+		long next = pending.nextSetIndex(0);
+		while (next >= 0)
 		{
-			equivChanged = false;
-			for (Integer p : aut.getStates())
+			pending.clearIndex(next);
+			int b = TriangularBitMatrix.row(next);
+			int a = (int) (next - TriangularBitMatrix.index(0, b));
+			for (int s = compiled.incomingStart(a); s < compiled.incomingEnd(a); s++)
 			{
-				for (Integer q : aut.getStates())
+				int p = compiled.source(s);
+				P phiGuard = compiled.incomingGuard(s);
+				for (int t = compiled.incomingStart(b); t < compiled.incomingEnd(b); t++)
 				{
-					if (q <= p)
+					int q = compiled.source(t);
+					if (p == q || neq.get(p, q))
 					{
 						continue;
 					}
-					List<Integer> pair = Arrays.asList(p,q);
-					if (neq.contains(pair))
+					stats.pairTested();
+					P psiGuard = compiled.incomingGuard(t);
+					P phiPsiAnd = ba.MkAnd(psiGuard, phiGuard);
+					if (ba.IsSatisfiable(phiPsiAnd))
 					{
-						continue;
-					}
-					for(SFAInputMove<P,S> phi : aut.getInputMovesFrom(p))
-					{
-						P phiGuard = phi.guard;
-						for(SFAInputMove<P, S> psi : aut.getInputMovesFrom(q))
-						{
-							P psiGuard = psi.guard;
-							P phiPsiAnd = ba.MkAnd(psiGuard, phiGuard);
-							if (ba.IsSatisfiable(phiPsiAnd))
-							{
-								List<Integer> nextPair = normalize(phi.to, psi.to);
-								if (neq.contains(nextPair))
-								{
-									neq.add(pair);
-									equivChanged = true;
-								}
-							}
-						}
+						neq.set(p, q);
+						pending.set(p, q);
 					}
 				}
 			}
+			next = pending.nextSetIndex(next + 1);
+			if (next < 0)
+			{
+				next = pending.nextSetIndex(0);
+			}
 		}
-		HashMap<Integer, Integer> stateEquiv = new HashMap<Integer, Integer>();
-		HashSet<Integer> newStates = new HashSet<Integer>();
-		Collection<Integer> newFinalStates = new HashSet<Integer>();
-		Integer newInitialState = null;
-		for(Integer p : aut.getStates())
+		stats.addPhaseTime("moore refine", System.nanoTime() - phaseStart);
+		phaseStart = System.nanoTime();
+		//Each state is compared with the first state of every class found so far, all 64 of a word at once.
+		//A class is then represented by its first state in the order of aut.getStates().
+		int[] classOf = new int[stateCount]; //first dense index of the class
+		long[] firsts = new long[(stateCount + 63) >>> 6];
+		for (int state = 0; state < stateCount; state++)
 		{
-			for(Integer q : newStates)
+			int first = neq.firstUnsetInRow(state, firsts);
+			if (first < 0)
 			{
-				List<Integer> pair = normalize(p,q);
-				if (neq.contains(pair))
-				{
-					continue;
-				}
-				else
-				{
-					stateEquiv.put(p,q);
-					if(aut.isInitialState(p))
-					{
-						newInitialState = q;
-					}
-				}
+				first = state;
+				firsts[state >>> 6] |= 1L << state;
 			}
-			if (!stateEquiv.containsKey(p))//no found equivalence for p
+			classOf[state] = first;
+		}
+		Integer[] representative = new Integer[stateCount];
+		HashSet<Integer> newStates = new HashSet<Integer>();
+		Collection<Integer> newFinalStates = new HashSet<Integer>();
+		for (Integer p : aut.getStates())
+		{
+			int first = classOf[compiled.indexOf(p)];
+			if (representative[first] == null)
 			{
+				representative[first] = p;
 				newStates.add(p);
-				stateEquiv.put(p, p);
-				if(aut.isFinalState(p))
+				if (aut.isFinalState(p))
 				{
 					newFinalStates.add(p);
 				}
-				if(aut.isInitialState(p))
-				{
-					newInitialState = p;
-				}
 			}
 		}
+		Integer newInitialState = representative[classOf[compiled.getInitialState()]];
 		assert(newInitialState != null);
 		Collection<SFAMove<P, S>> newTransitions = new LinkedList<SFAMove<P, S>>();
 		for(Integer p : newStates)
 		{
 			for(SFAInputMove<P,S> t : aut.getInputMovesFrom(p))
 			{
-				SFAInputMove<P,S> newt = new SFAInputMove<P,S>(p, stateEquiv.get(t.to), t.guard);
+				SFAInputMove<P,S> newt = new SFAInputMove<P,S>(p, representative[classOf[compiled.indexOf(t.to)]], t.guard);
 				newTransitions.add(newt);
-				//System.out.println(newt);
 			}
 		}
 		SFA<P,S> minAut = SFA.MkSFA(newTransitions, newInitialState, newFinalStates, ba);
+		stats.addPhaseTime("moore merge", System.nanoTime() - phaseStart);
 		return minAut;
 	}
 }
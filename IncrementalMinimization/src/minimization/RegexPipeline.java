@@ -0,0 +1,553 @@
+package minimization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import minimization.incremental.IncrementalMinimization;
+
+import org.sat4j.specs.TimeoutException;
+
+import benchmark.SFAprovider;
+
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import automata.sfa.SFA;
+
+public class RegexPipeline
+{
+	/* Turns a list of regex into determinized, total and optionally minimized automata. Parsing,
+	 * determinization and minimization each run on their own pool of workers. A stage holds at most
+	 * queueCapacity items (waiting or running) and a worker handing an item to a full stage blocks, so a
+	 * slow stage or a slow consumer of the results holds back the stages before it instead of letting
+	 * automata pile up in memory.
+	 * Each determinization gets determinizeTimeout ms, each minimization gets minimizeBudget ns of
+	 * incremental minimization, which Hopcroft finishes if the budget runs out, and minimizeTimeout ms in
+	 * all. Instead of catching OutOfMemoryError, a determinization only starts while the used heap is below
+	 * memoryFraction of the maximum heap, or if no other determinization is running. An OutOfMemoryError
+	 * the check did not prevent, or a StackOverflowError from a regex nested too deeply for the parser, only
+	 * fails its own item.
+	 * build runs the same steps for a single regex on the calling thread.
+	 * The algebra is shared by all workers.
+	 */
+
+	public enum Status {USABLE, PARSE_FAILED, TIMED_OUT, TOO_LARGE, FAILED}
+
+	public static class Result
+	{
+		private final int index;
+		private final String regex;
+		private Status status;
+		private String message;
+		private SFA<CharPred, Character> aut;
+		private SFA<CharPred, Character> minAut;
+		private MinimizationStats stats;
+
+		private Result(int index, String regex)
+		{
+			this.index = index;
+			this.regex = regex;
+			this.status = Status.USABLE;
+		}
+
+		private Result fail(Status status, String message)
+		{
+			this.status = status;
+			this.message = message;
+			this.aut = null;
+			this.minAut = null;
+			this.stats = null;
+			return this;
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		public String getRegex()
+		{
+			return regex;
+		}
+
+		public Status getStatus()
+		{
+			return status;
+		}
+
+		public boolean isUsable()
+		{
+			return status == Status.USABLE;
+		}
+
+		public String getMessage()
+		{
+			return message;
+		}
+
+		public SFA<CharPred, Character> getAutomaton()
+		{
+			//determinized and total, null unless usable
+			return aut;
+		}
+
+		public SFA<CharPred, Character> getMinAutomaton()
+		{
+			//null unless usable and the pipeline minimizes
+			return minAut;
+		}
+
+		public MinimizationStats getStats()
+		{
+			//stats of the minimization, null unless usable and the pipeline minimizes
+			return stats;
+		}
+	}
+
+	public interface ResultHandler
+	{
+		public void handle(Result result);
+	}
+
+	private class Stage //worker pool that holds at most capacity items
+	{
+		private final ExecutorService workers;
+		private final Semaphore slots;
+
+		public Stage(int threads, int capacity)
+		{
+			this.workers = Executors.newFixedThreadPool(threads);
+			this.slots = new Semaphore(Math.max(capacity, threads));
+		}
+
+		public void submit(final Runnable task) throws InterruptedException
+		{
+			slots.acquire();
+			workers.execute(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						task.run();
+					}
+					finally
+					{
+						slots.release();
+					}
+				}
+			});
+		}
+
+		public void shutdown()
+		{
+			workers.shutdownNow();
+		}
+	}
+
+	public static final long DEFAULT_DETERMINIZE_TIMEOUT = 3600000; //1 hour
+	public static final long DEFAULT_MINIMIZE_TIMEOUT = 3600000; //1 hour
+	private static final long MEMORY_POLL_INTERVAL = 100; //ms between heap checks of a waiting determinization
+
+	private final UnaryCharIntervalSolver ba;
+	private int parseThreads = Runtime.getRuntime().availableProcessors();
+	private int determinizeThreads = Runtime.getRuntime().availableProcessors();
+	private int minimizeThreads = Runtime.getRuntime().availableProcessors();
+	private int queueCapacity = 64;
+	private long determinizeTimeout = DEFAULT_DETERMINIZE_TIMEOUT;
+	private int maxStates = Integer.MAX_VALUE;
+	private boolean minimize = false;
+	private long minimizeBudget = Long.MAX_VALUE;
+	private long minimizeTimeout = DEFAULT_MINIMIZE_TIMEOUT;
+	private double memoryFraction = 0.75;
+
+	private MinimizationCache<CharPred, Character> cache = null;
+	private final MinimizationCache.AlgorithmFactory<CharPred, Character> minimizerFactory =
+			new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+	{
+		public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+				BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+		{
+			final IncrementalMinimization<CharPred, Character> incrMin =
+					new IncrementalMinimization<CharPred, Character>(aut, ba);
+			return new MinimizationAlgorithm<CharPred, Character>()
+			{
+				public SFA<CharPred, Character> minimize() throws TimeoutException
+				{
+					return incrMin.minimizeWithFallback(minimizeBudget, TimeUnit.MILLISECONDS.toNanos(minimizeTimeout));
+				}
+
+				public MinimizationStats getStats()
+				{
+					return incrMin.getStats();
+				}
+			};
+		}
+	};
+
+	private final Object memoryLock = new Object();
+	private int runningDeterminizations = 0;
+
+	public RegexPipeline(UnaryCharIntervalSolver ba)
+	{
+		this.ba = ba;
+	}
+
+	public void setThreads(int parseThreads, int determinizeThreads, int minimizeThreads)
+	{
+		if (parseThreads < 1 || determinizeThreads < 1 || minimizeThreads < 1)
+		{
+			throw new IllegalArgumentException("Every stage needs at least one thread");
+		}
+		this.parseThreads = parseThreads;
+		this.determinizeThreads = determinizeThreads;
+		this.minimizeThreads = minimizeThreads;
+	}
+
+	public void setQueueCapacity(int queueCapacity)
+	{
+		if (queueCapacity < 1)
+		{
+			throw new IllegalArgumentException("Queue capacity must be positive");
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	public void setDeterminizeTimeout(long determinizeTimeout)
+	{
+		this.determinizeTimeout = determinizeTimeout;
+	}
+
+	public void setMaxStates(int maxStates)
+	{
+		//determinized automata with more states are reported TOO_LARGE and not minimized
+		this.maxStates = maxStates;
+	}
+
+	public void setMinimize(boolean minimize, long minimizeBudget)
+	{
+		this.minimize = minimize;
+		this.minimizeBudget = minimizeBudget;
+	}
+
+	public void setMinimizeTimeout(long minimizeTimeout)
+	{
+		//ms for a whole minimization, the Hopcroft fallback included, before it is reported TIMED_OUT
+		this.minimizeTimeout = minimizeTimeout;
+	}
+
+	public void setCache(MinimizationCache<CharPred, Character> cache)
+	{
+		//minimized automata are looked up in cache first, so duplicate regex are only minimized once
+		this.cache = cache;
+	}
+
+	public void setMemoryFraction(double memoryFraction)
+	{
+		if (memoryFraction <= 0 || memoryFraction > 1)
+		{
+			throw new IllegalArgumentException("Memory fraction must be in (0, 1]");
+		}
+		this.memoryFraction = memoryFraction;
+	}
+
+	private void acquireMemory() throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		long limit = (long) (runtime.maxMemory() * memoryFraction);
+		synchronized (memoryLock)
+		{
+			while (runningDeterminizations > 0 && runtime.totalMemory() - runtime.freeMemory() > limit)
+			{
+				memoryLock.wait(MEMORY_POLL_INTERVAL);
+			}
+			runningDeterminizations++;
+		}
+	}
+
+	private void releaseMemory()
+	{
+		synchronized (memoryLock)
+		{
+			runningDeterminizations--;
+			memoryLock.notifyAll();
+		}
+	}
+
+	private static void fail(Result result, Error e)
+	{
+		//drops the automata of the item, they are likely what filled the heap
+		result.aut = null;
+		result.minAut = null;
+		result.fail((e instanceof OutOfMemoryError) ? Status.TOO_LARGE : Status.FAILED, e.toString());
+	}
+
+	private boolean parseStep(Result result)
+	{
+		try
+		{
+			result.aut = (new SFAprovider(result.regex, ba)).getSFA();
+			return true;
+		}
+		catch (RuntimeException e)
+		{
+			result.fail(Status.PARSE_FAILED, e.toString());
+			return false;
+		}
+		catch (StackOverflowError e)
+		{
+			result.fail(Status.PARSE_FAILED, e.toString());
+			return false;
+		}
+	}
+
+	private boolean determinizeStep(Result result) throws InterruptedException
+	{
+		acquireMemory();
+		try
+		{
+			SFA<CharPred, Character> aut = result.aut.determinize(ba, determinizeTimeout);
+			result.aut = aut.mkTotal(ba);
+		}
+		catch (TimeoutException e)
+		{
+			result.fail(Status.TIMED_OUT, "determinization");
+			return false;
+		}
+		finally
+		{
+			releaseMemory();
+		}
+		if (result.aut.stateCount() > maxStates)
+		{
+			result.fail(Status.TOO_LARGE, result.aut.stateCount() + " states");
+			return false;
+		}
+		return true;
+	}
+
+	private void minimizeStep(Result result)
+	{
+		try
+		{
+			MinimizationAlgorithm<CharPred, Character> minimizer = (cache == null) ?
+					minimizerFactory.make(result.aut, ba) :
+					new CachedMinimization<CharPred, Character>(result.aut, cache, minimizerFactory);
+			result.minAut = minimizer.minimize();
+			result.stats = minimizer.getStats();
+		}
+		catch (TimeoutException e)
+		{
+			result.fail(Status.TIMED_OUT, "minimization");
+		}
+		catch (DebugException e)
+		{
+			result.fail(Status.FAILED, e.toString());
+		}
+	}
+
+	public Result build(String regex) throws InterruptedException
+	{
+		//all steps for one regex, on the calling thread, the result has index 0
+		Result result = new Result(0, regex);
+		try
+		{
+			if (parseStep(result) && determinizeStep(result) && minimize)
+			{
+				minimizeStep(result);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			result.fail(Status.FAILED, e.toString());
+		}
+		catch (StackOverflowError | OutOfMemoryError e)
+		{
+			fail(result, e);
+		}
+		return result;
+	}
+
+	private class Run //stages and results of one call to run
+	{
+		private final BlockingQueue<Result> done = new ArrayBlockingQueue<Result>(queueCapacity);
+		private final Stage parseStage = new Stage(parseThreads, queueCapacity);
+		private final Stage determinizeStage = new Stage(determinizeThreads, queueCapacity);
+		private final Stage minimizeStage = new Stage(minimizeThreads, queueCapacity);
+
+		private abstract class Step implements Runnable
+		{
+			//one stage of one item, a result that fails or is finished is passed on to the handler
+			protected final Result result;
+
+			public Step(Result result)
+			{
+				this.result = result;
+			}
+
+			protected abstract void process() throws InterruptedException;
+
+			public void run()
+			{
+				try
+				{
+					process();
+				}
+				catch (InterruptedException e)
+				{
+					//pipeline shut down
+				}
+				catch (RuntimeException e)
+				{
+					result.fail(Status.FAILED, e.toString());
+					finish(result);
+				}
+				catch (StackOverflowError | OutOfMemoryError e)
+				{
+					fail(result, e);
+					finish(result); //run waits for a result of every item
+				}
+			}
+		}
+
+		private void finish(Result result)
+		{
+			try
+			{
+				done.put(result);
+			}
+			catch (InterruptedException e)
+			{
+				//pipeline shut down
+			}
+		}
+
+		public void parse(Result result) throws InterruptedException
+		{
+			parseStage.submit(new Step(result)
+			{
+				protected void process() throws InterruptedException
+				{
+					if (parseStep(result))
+					{
+						determinize(result);
+					}
+					else
+					{
+						finish(result);
+					}
+				}
+			});
+		}
+
+		private void determinize(Result result) throws InterruptedException
+		{
+			determinizeStage.submit(new Step(result)
+			{
+				protected void process() throws InterruptedException
+				{
+					if (determinizeStep(result) && minimize)
+					{
+						minimize(result);
+					}
+					else
+					{
+						finish(result);
+					}
+				}
+			});
+		}
+
+		private void minimize(Result result) throws InterruptedException
+		{
+			minimizeStage.submit(new Step(result)
+			{
+				protected void process() throws InterruptedException
+				{
+					minimizeStep(result);
+					finish(result);
+				}
+			});
+		}
+
+		public Result take() throws InterruptedException
+		{
+			return done.take();
+		}
+
+		public void shutdown()
+		{
+			parseStage.shutdown();
+			determinizeStage.shutdown();
+			minimizeStage.shutdown();
+		}
+	}
+
+	public void run(final List<String> regexList, ResultHandler handler) throws InterruptedException
+	{
+		//Handles one result per regex, on the calling thread and in order of completion. The regex are fed
+		//to the pipeline from another thread, so a full pipeline never blocks the handler.
+		final Run run = new Run();
+		Thread feeder = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					for (int i = 0; i < regexList.size(); i++)
+					{
+						run.parse(new Result(i, regexList.get(i)));
+					}
+				}
+				catch (InterruptedException e)
+				{
+					//pipeline shut down
+				}
+			}
+		});
+		feeder.setDaemon(true);
+		feeder.start();
+		try
+		{
+			for (int i = 0; i < regexList.size(); i++)
+			{
+				handler.handle(run.take());
+			}
+		}
+		finally
+		{
+			feeder.interrupt();
+			run.shutdown();
+		}
+	}
+
+	public List<Result> runAll(List<String> regexList) throws InterruptedException
+	{
+		//Results of all regex, in the order of regexList. Every automaton is kept until the last one is
+		//done, so long lists are better streamed through run or built one at a time.
+		final List<Result> results = new ArrayList<Result>(regexList.size());
+		run(regexList, new ResultHandler()
+		{
+			public void handle(Result result)
+			{
+				results.add(result);
+			}
+		});
+		Collections.sort(results, new Comparator<Result>()
+		{
+			public int compare(Result a, Result b)
+			{
+				return a.index - b.index;
+			}
+		});
+		return results;
+	}
+}
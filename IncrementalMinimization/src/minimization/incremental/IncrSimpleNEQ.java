@@ -1,11 +1,10 @@
 package minimization.incremental;
 
 import java.util.Comparator;
-import java.util.LinkedHashMap;
-import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
 
+import structures.StatePairSet;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
 
@@ -41,21 +40,21 @@ public class IncrSimpleNEQ<P,S> extends IncrementalMinimization<P,S>
 	}
 	
 	@Override
-	protected LinkedHashMap<Integer, Integer> generateDistanceToFinalMap()
+	protected int[] generateDistanceToFinalMap()
 	{
 		return null;
 	}
 	
 	@Override
-	protected Integer getStateDistanceToFinal(Integer state)
+	protected int getStateDistanceToFinal(Integer state)
 	{
+		//all states at the same distance, so isKnownNotEqual only knows neq and the retained classes
 		return 0;
 	}
 	
 	@Override
-	protected boolean isKnownNotEqual(Integer p, Integer q)
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
 	{
-		List<Integer> normalizedPair = normalize(p,q);
-		return neq.contains(normalizedPair);
+		return new IncrSimpleNEQ<P,S>(editedAut, ba);
 	}
 }
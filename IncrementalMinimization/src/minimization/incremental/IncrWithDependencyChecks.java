@@ -1,18 +1,14 @@
 package minimization.incremental;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Stack;
 
 import org.sat4j.specs.TimeoutException;
 
 import structures.DependencyGraph;
-import structures.DisjointSets;
+import structures.StatePairSet;
+import structures.UnionFind;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
-import automata.sfa.SFAInputMove;
 
 public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 {
@@ -21,12 +17,54 @@ public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 	{
 		
 		private DependencyGraph deps;
+		private final StatePairSet closureTested;
+		private final StatePairSet closureUntested;
 		
-		public EquivTestDependency (DisjointSets<Integer> equivClasses, HashSet<List<Integer>> equiv, 
-				HashSet<List<Integer>> path)
+		public EquivTestDependency (UnionFind<Integer> equivClasses, StatePairSet equiv, 
+				StatePairSet path)
 		{
 			super(equivClasses, equiv, path);
 			this.deps = new DependencyGraph();
+			this.closureTested = new StatePairSet();
+			this.closureUntested = new StatePairSet();
+		}
+		
+		@Override
+		protected void reset()
+		{
+			super.reset();
+			if (!sharedDependencies)
+			{
+				deps.clear();
+			}
+		}
+		
+		private boolean reuseDependencies(long nextPair, Stack<EquivRecord> testStack)
+		{
+			//A pair tested by an earlier test of this minimize call is assumed like the pairs of this test, along
+			//with the tested pairs it depends on. Only the untested pairs they wait for are pushed.
+			closureTested.clear();
+			closureUntested.clear();
+			if (!deps.collectClosure(nextPair, equivClasses, equiv, closureTested, closureUntested))
+			{
+				return false;
+			}
+			long[] untested = closureUntested.toArray();
+			for (long untestedPair : untested)
+			{
+				if (isKnownNotEqual(StatePairSet.first(untestedPair), StatePairSet.second(untestedPair)))
+				{
+					return false; //explored as usual, so the failure gets its path
+				}
+			}
+			equiv.addAll(closureTested);
+			for (long untestedPair : untested)
+			{
+				equiv.add(untestedPair);
+				testStack.push(new EquivRecord(StatePairSet.first(untestedPair), StatePairSet.second(untestedPair),
+						pathStack.depth()));
+			}
+			return true;
 		}
 		
 		@Override
@@ -36,7 +74,7 @@ public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 			{
 				return false;
 			}
-			EquivRecord start = new EquivRecord(pStart,qStart,path);
+			EquivRecord start = new EquivRecord(pStart,qStart,0);
 			Stack<EquivRecord> testStack = new Stack<EquivRecord>();
 			testStack.add(start);
 			while (!testStack.isEmpty())
@@ -44,21 +82,23 @@ public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 				EquivRecord curEquivTest = testStack.pop();
 				Integer p = curEquivTest.pState;
 				Integer q = curEquivTest.qState;
-				HashSet<List<Integer>> curPath = curEquivTest.curPath;
-				List<Integer> pair = normalize(p,q);
-				Collection<SFAInputMove<P,S>> outp = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(p));
-				Collection<SFAInputMove<P,S>> outq = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(q));
+				long pair = normalize(p,q);
+				pathStack.truncate(curEquivTest.depth);
+				pathStack.push(pair);
+				budgetCheck();
+				outp.load(compiled.indexOf(p));
+				outq.load(compiled.indexOf(q));
 				while(!outp.isEmpty() && !outq.isEmpty())
 				{	
-					HashSet<List<Integer>> newPath = new HashSet<List<Integer>>(curPath);
-					newPath.add(pair);
-					List<SFAInputMove<P,S>> nonDisjointGuards = findNonDisjointMoves(outp, outq);
-					SFAInputMove<P,S> pMove = nonDisjointGuards.get(0);
-					SFAInputMove<P,S> qMove = nonDisjointGuards.get(1);
-					Integer pNextClass = equivClasses.find(pMove.to);
-					Integer qNextClass = equivClasses.find(qMove.to);
-					List<Integer> nextPair = normalize(pNextClass, qNextClass);
-					if(equiv.contains(nextPair) || curPath.contains(nextPair))
+					int qIndex = findNonDisjointMoves(outp, outq);
+					int pTo = outp.target(0);
+					P pGuard = outp.guard(0);
+					int qTo = outq.target(qIndex);
+					P qGuard = outq.guard(qIndex);
+					Integer pNextClass = equivClasses.find(compiled.stateAt(pTo));
+					Integer qNextClass = equivClasses.find(compiled.stateAt(qTo));
+					long nextPair = normalize(pNextClass, qNextClass);
+					if(equiv.contains(nextPair) || pathStack.containsBelowTop(nextPair))
 					{
 						deps.addDependency(pair, nextPair);
 					}
@@ -66,12 +106,13 @@ public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 					{
 						if(isKnownNotEqual(pNextClass,qNextClass))
 						{
-							newPath.add(nextPair);
-							for(List<Integer> pathPair : path)
-							{
-								neq.add(pathPair); //TODO: remove this call from outer minimize method
-							}
-							int result = deps.mergeStates(equivClasses, newPath);
+							StatePairSet badPath = new StatePairSet(pathStack.depth()+1);
+							pathStack.addAllTo(badPath);
+							badPath.add(nextPair);
+							neq.addAll(path); //TODO: remove this call from outer minimize method
+							int result = sharedDependencies ? deps.mergeAndPrune(equivClasses, badPath, neq)
+									: deps.mergeStates(equivClasses, badPath);
+							stats.addUnions(result);
 							if(result > 0)
 							{
 								System.out.println(String.format("Non-recursive alg merged %d pairs", result));
@@ -81,41 +122,62 @@ public class IncrWithDependencyChecks<P,S> extends IncrementalMinimization<P,S>
 						}
 						else
 						{
-							equiv.add(nextPair);
-							EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, newPath);
-							testStack.add(nextTest);
 							deps.addDependency(pair, nextPair);
+							if (!sharedDependencies || !reuseDependencies(nextPair, testStack))
+							{
+								equiv.add(nextPair);
+								EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, pathStack.depth());
+								testStack.add(nextTest);
+							}
 						}
 					}
-					outp.remove(pMove);
-					outq.remove(qMove);
-					P newPGuard = ba.MkAnd(pMove.guard, ba.MkNot(qMove.guard));
+					outp.remove(0);
+					outq.remove(qIndex);
+					P newPGuard = ba.MkAnd(pGuard, ba.MkNot(qGuard));
 					if (ba.IsSatisfiable(newPGuard))
 					{
-						outp.add(new SFAInputMove<P,S>(pMove.from, pMove.to, newPGuard));
+						outp.add(pTo, newPGuard);
 					}
-					P newQGuard = ba.MkAnd(qMove.guard, ba.MkNot(pMove.guard));
+					P newQGuard = ba.MkAnd(qGuard, ba.MkNot(pGuard));
 					if (ba.IsSatisfiable(newQGuard))
 					{
-						outq.add(new SFAInputMove<P,S>(qMove.from, qMove.to, newQGuard));
+						outq.add(qTo, newQGuard);
 					}
 				}
+				deps.setTested(pair);
 			}
 			equiv.add(normalize(pStart, qStart));
 			return true;
 		}
 	}
 	
+	private final boolean sharedDependencies;
+
 	public IncrWithDependencyChecks(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
 	{
+		this(aut, ba, false);
+	}
+
+	public IncrWithDependencyChecks(SFA<P,S> aut, BooleanAlgebra<P,S> ba, boolean sharedDependencies)
+			throws TimeoutException
+	{
+		//With sharedDependencies, one dependency graph is kept for a whole minimize call instead of one per
+		//tested pair, so pairs left waiting on an untested pair are merged by whichever later test settles it.
 		super(aut,ba);
+		this.sharedDependencies = sharedDependencies;
 	}
 	
 	@Override
-	protected EquivTest makeEquivTest(DisjointSets<Integer> equivClasses)
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
 	{
-		HashSet<List<Integer>> equiv = new HashSet<List<Integer>>(num_pairs,0.9f);
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>(num_pairs,0.9f);
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
 		return new EquivTestDependency(equivClasses, equiv, path);
 	}
+	
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrWithDependencyChecks<P,S>(editedAut, ba, sharedDependencies);
+	}
 }
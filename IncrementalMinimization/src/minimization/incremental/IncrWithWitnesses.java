@@ -0,0 +1,350 @@
+package minimization.incremental;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Stack;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.StatePairSet;
+import structures.UnionFind;
+import theory.BooleanAlgebra;
+import automata.sfa.SFA;
+
+public class IncrWithWitnesses<P,S> extends IncrementalMinimization<P,S>
+{
+	/* A failed test knows a word telling its start pair apart: one witness for each pair of overlapping
+	 * guards along its path, followed by a suffix telling apart the known non-equivalent pair it ended on.
+	 * The word is run from every state with the same distance to a final state as the start pair, all other
+	 * states are told apart by their distance already. Each bucket of states keeps up to MAX_WORDS words,
+	 * and bit k of a state's signature says whether word k of its bucket is accepted from it. States with
+	 * different signatures are not equivalent, so a single run settles every pair split by the word.
+	 * Suffixes come from the distances or from the signatures of the pair, a pair only known from neq has
+	 * no word and the test refutes nothing.
+	 */
+
+	public static final int MAX_WORDS = 64; //one bit of a long per word
+
+	protected class EquivTestWitness extends EquivTest
+	{
+		private class WitnessRecord extends EquivRecord
+		{
+			public final P pGuard; //overlapping guards of the moves into this pair, null for the start pair
+			public final P qGuard;
+
+			public WitnessRecord(Integer p, Integer q, int depth, P pGuard, P qGuard)
+			{
+				super(p, q, depth);
+				this.pGuard = pGuard;
+				this.qGuard = qGuard;
+			}
+		}
+
+		private final ArrayList<P> pGuards; //guards into each pair of pathStack, parallel to it
+		private final ArrayList<P> qGuards;
+
+		public EquivTestWitness(UnionFind<Integer> equivClasses, StatePairSet equiv, StatePairSet path)
+		{
+			super(equivClasses, equiv, path);
+			this.pGuards = new ArrayList<P>();
+			this.qGuards = new ArrayList<P>();
+		}
+
+		@Override
+		protected void reset()
+		{
+			super.reset();
+			pGuards.clear();
+			qGuards.clear();
+		}
+
+		private void truncateGuards(int depth)
+		{
+			while (pGuards.size() > depth)
+			{
+				pGuards.remove(pGuards.size()-1);
+				qGuards.remove(qGuards.size()-1);
+			}
+		}
+
+		private List<S> distinguishingWord(P pGuard, P qGuard, Integer pNext, Integer qNext)
+				throws TimeoutException
+		{
+			List<S> suffix = separatingSuffix(pNext, qNext);
+			if (suffix == null)
+			{
+				return null;
+			}
+			ArrayList<S> word = new ArrayList<S>(pGuards.size() + suffix.size());
+			for (int i = 1; i < pGuards.size(); i++)
+			{
+				word.add(ba.generateWitness(ba.MkAnd(pGuards.get(i), qGuards.get(i))));
+			}
+			word.add(ba.generateWitness(ba.MkAnd(pGuard, qGuard)));
+			word.addAll(suffix);
+			return word;
+		}
+
+		@Override
+		public boolean isEquiv(Integer pStart, Integer qStart) throws TimeoutException
+		{
+			if (isKnownNotEqual(pStart,qStart))
+			{
+				return false;
+			}
+			WitnessRecord start = new WitnessRecord(pStart, qStart, 0, null, null);
+			Stack<WitnessRecord> testStack = new Stack<WitnessRecord>();
+			testStack.add(start);
+			while (!testStack.isEmpty())
+			{
+				WitnessRecord curEquivTest = testStack.pop();
+				Integer p = curEquivTest.pState;
+				Integer q = curEquivTest.qState;
+				long pair = normalize(p,q);
+				pathStack.truncate(curEquivTest.depth);
+				pathStack.push(pair);
+				truncateGuards(curEquivTest.depth);
+				pGuards.add(curEquivTest.pGuard);
+				qGuards.add(curEquivTest.qGuard);
+				budgetCheck();
+				outp.load(compiled.indexOf(p));
+				outq.load(compiled.indexOf(q));
+				while(!outp.isEmpty() && !outq.isEmpty())
+				{
+					int qIndex = findNonDisjointMoves(outp, outq);
+					int pTo = outp.target(0);
+					P pGuard = outp.guard(0);
+					int qTo = outq.target(qIndex);
+					P qGuard = outq.guard(qIndex);
+					Integer pNextClass = equivClasses.find(compiled.stateAt(pTo));
+					Integer qNextClass = equivClasses.find(compiled.stateAt(qTo));
+					long nextPair = normalize(pNextClass, qNextClass);
+					if(!pNextClass.equals(qNextClass) && !equiv.contains(nextPair))
+					{
+						if(isKnownNotEqual(pNextClass,qNextClass))
+						{
+							pathStack.addAllTo(path);
+							List<S> word = distinguishingWord(pGuard, qGuard, pNextClass, qNextClass);
+							if (word != null)
+							{
+								refute(pStart, qStart, word);
+							}
+							return false;
+						}
+						if (!pathStack.contains(nextPair))
+						{
+							equiv.add(nextPair);
+							testStack.push(new WitnessRecord(pNextClass, qNextClass, pathStack.depth(),
+									pGuard, qGuard));
+						}
+					}
+					outp.remove(0);
+					outq.remove(qIndex);
+					P newPGuard = ba.MkAnd(pGuard, ba.MkNot(qGuard));
+					if (ba.IsSatisfiable(newPGuard))
+					{
+						outp.add(pTo, newPGuard);
+					}
+					P newQGuard = ba.MkAnd(qGuard, ba.MkNot(pGuard));
+					if (ba.IsSatisfiable(newQGuard))
+					{
+						outq.add(qTo, newQGuard);
+					}
+				}
+			}
+			equiv.add(normalize(pStart, qStart));
+			return true;
+		}
+	}
+
+	private final long[] signatures; //dense state index to the words of its bucket it accepts
+	private final HashMap<Integer, int[]> buckets; //distance to final state to the dense indices at that distance
+	private final HashMap<Integer, ArrayList<List<S>>> bucketWords;
+	private final S[] finalWitness; //first character of a shortest word to a final state, filled in lazily
+	private final int[] finalNext; //state reached by that character, -1 until filled in
+	private final int[] stepTarget; //successors of the character being run, valid where stepStamp is current
+	private final int[] stepStamp;
+	private int stamp;
+	private long wordsRun;
+
+	@SuppressWarnings("unchecked")
+	public IncrWithWitnesses(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		super(aut, ba);
+		int stateCount = compiled.stateCount();
+		this.signatures = new long[stateCount];
+		this.buckets = new HashMap<Integer, int[]>();
+		this.bucketWords = new HashMap<Integer, ArrayList<List<S>>>();
+		this.finalWitness = (S[]) new Object[stateCount];
+		this.finalNext = new int[stateCount];
+		Arrays.fill(finalNext, -1);
+		this.stepTarget = new int[stateCount];
+		this.stepStamp = new int[stateCount];
+		this.stamp = 0;
+		this.wordsRun = 0;
+		HashMap<Integer, Integer> bucketSizes = new HashMap<Integer, Integer>();
+		for (int state = 0; state < stateCount; state++)
+		{
+			Integer size = bucketSizes.get(distance(state));
+			bucketSizes.put(distance(state), (size == null) ? 1 : size+1);
+		}
+		for (int state = stateCount-1; state >= 0; state--)
+		{
+			int[] bucket = buckets.get(distance(state));
+			if (bucket == null)
+			{
+				bucket = new int[bucketSizes.get(distance(state))];
+				buckets.put(distance(state), bucket);
+			}
+			int size = bucketSizes.get(distance(state)) - 1; //filled from the back, so states stay in order
+			bucket[size] = state;
+			bucketSizes.put(distance(state), size);
+		}
+	}
+
+	private int distance(int state)
+	{
+		return getStateDistanceToFinal(compiled.stateAt(state));
+	}
+
+	private List<S> acceptedWord(int state) throws TimeoutException
+	{
+		//a shortest word accepted from state, following moves that bring the distance down by one
+		ArrayList<S> word = new ArrayList<S>(distance(state));
+		while (!compiled.isFinal(state))
+		{
+			if (finalNext[state] < 0)
+			{
+				for (int move = compiled.movesStart(state); move < compiled.movesEnd(state); move++)
+				{
+					if (distance(compiled.target(move)) == distance(state) - 1)
+					{
+						finalWitness[state] = ba.generateWitness(compiled.guard(move));
+						finalNext[state] = compiled.target(move);
+						break;
+					}
+				}
+			}
+			word.add(finalWitness[state]);
+			state = finalNext[state];
+		}
+		return word;
+	}
+
+	protected List<S> separatingSuffix(Integer p, Integer q) throws TimeoutException
+	{
+		//a word accepted from exactly one of p and q, null if they are only known apart from neq
+		int pIndex = compiled.indexOf(p);
+		int qIndex = compiled.indexOf(q);
+		int pDistance = distance(pIndex);
+		int qDistance = distance(qIndex);
+		if (pDistance != qDistance)
+		{
+			return acceptedWord((pDistance < qDistance) ? pIndex : qIndex);
+		}
+		long split = signatures[pIndex] ^ signatures[qIndex];
+		if (split != 0)
+		{
+			return bucketWords.get(pDistance).get(Long.numberOfTrailingZeros(split));
+		}
+		return null;
+	}
+
+	private int step(int state, S character) throws TimeoutException
+	{
+		//states of a bucket soon run into each other, each state is stepped once per character
+		if (stepStamp[state] != stamp)
+		{
+			stepStamp[state] = stamp;
+			stepTarget[state] = -1; //no move, only if the algebra knows characters outside True
+			for (int move = compiled.movesStart(state); move < compiled.movesEnd(state); move++)
+			{
+				if (ba.HasModel(compiled.guard(move), character))
+				{
+					stepTarget[state] = compiled.target(move);
+					break;
+				}
+			}
+		}
+		return stepTarget[state];
+	}
+
+	protected void refute(Integer pStart, Integer qStart, List<S> word) throws TimeoutException
+	{
+		int distance = getStateDistanceToFinal(pStart);
+		ArrayList<List<S>> words = bucketWords.get(distance);
+		if (words == null)
+		{
+			words = new ArrayList<List<S>>();
+			bucketWords.put(distance, words);
+		}
+		if (words.size() == MAX_WORDS)
+		{
+			return;
+		}
+		int[] bucket = buckets.get(distance);
+		int[] current = Arrays.copyOf(bucket, bucket.length);
+		for (S character : word)
+		{
+			stamp++;
+			for (int i = 0; i < current.length; i++)
+			{
+				if (current[i] >= 0)
+				{
+					current[i] = step(current[i], character);
+				}
+			}
+		}
+		wordsRun++;
+		long bit = 1L << words.size();
+		for (int i = 0; i < bucket.length; i++)
+		{
+			if (current[i] >= 0 && compiled.isFinal(current[i]))
+			{
+				signatures[bucket[i]] |= bit;
+			}
+		}
+		if ((signatures[compiled.indexOf(pStart)] & bit) == (signatures[compiled.indexOf(qStart)] & bit))
+		{
+			//the word does not split its own start pair, so it is not kept
+			for (int state : bucket)
+			{
+				signatures[state] &= ~bit;
+			}
+			return;
+		}
+		words.add(word);
+	}
+
+	@Override
+	protected boolean isKnownNotEqual(Integer p, Integer q)
+	{
+		if (signatures[compiled.indexOf(p)] != signatures[compiled.indexOf(q)])
+		{
+			stats.neqHit();
+			return true;
+		}
+		return super.isKnownNotEqual(p, q);
+	}
+
+	public long getWordsRun()
+	{
+		return wordsRun;
+	}
+
+	@Override
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
+	{
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
+		return new EquivTestWitness(equivClasses, equiv, path);
+	}
+
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrWithWitnesses<P,S>(editedAut, ba);
+	}
+}
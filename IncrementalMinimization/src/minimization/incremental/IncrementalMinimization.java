@@ -7,18 +7,24 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
+import java.util.Map;
 import java.util.Stack;
 
+import minimization.CountingBooleanAlgebra;
 import minimization.DebugException;
+import minimization.HopcroftMinimization;
 import minimization.MinimizationAlgorithm;
+import minimization.MinimizationStats;
 
 import org.sat4j.specs.TimeoutException;
 
+import structures.CompiledSFA;
 import structures.DisjointSets;
+import structures.StatePairSet;
+import structures.StatePairStack;
+import structures.TimeSeries;
+import structures.UnionFind;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
@@ -27,60 +33,171 @@ import automata.sfa.SFAMove;
 public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 {
 	
+	protected class MoveList //working copy of a state's moves, guards are split away as a test consumes them
+	{
+		private int[] targets; //dense state indices of the compiled automaton
+		private P[] guards;
+		private int size;
+		
+		@SuppressWarnings("unchecked")
+		public MoveList(int capacity)
+		{
+			this.targets = new int[Math.max(capacity, 1)];
+			this.guards = (P[]) new Object[targets.length];
+			this.size = 0;
+		}
+		
+		public MoveList()
+		{
+			this(8);
+		}
+		
+		public void load(int state)
+		{
+			size = 0;
+			for (int move = compiled.movesStart(state); move < compiled.movesEnd(state); move++)
+			{
+				add(compiled.target(move), compiled.guard(move));
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		public void add(int target, P guard)
+		{
+			if (size == targets.length)
+			{
+				targets = Arrays.copyOf(targets, size*2);
+				guards = Arrays.copyOf(guards, size*2);
+			}
+			targets[size] = target;
+			guards[size] = guard;
+			size++;
+		}
+		
+		public void remove(int index)
+		{
+			//order is kept so moves are matched in the same order the SFA listed them
+			System.arraycopy(targets, index+1, targets, index, size-index-1);
+			System.arraycopy(guards, index+1, guards, index, size-index-1);
+			size--;
+			guards[size] = null;
+		}
+		
+		public int target(int index)
+		{
+			return targets[index];
+		}
+		
+		public P guard(int index)
+		{
+			return guards[index];
+		}
+		
+		public int size()
+		{
+			return size;
+		}
+		
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+	}
+	
 	protected class EquivTest //tests for equality of two given states in the automata
 	{
 		protected class EquivRecord
 		{
 			public final Integer pState;
 			public final Integer qState;
-			public final HashSet <List<Integer>> curPath;
+			public final int depth; //number of pairs on the path before this one
 			
-			public EquivRecord(Integer p, Integer q, HashSet<List<Integer>> curPath)
+			public EquivRecord(Integer p, Integer q, int depth)
 			{
 				this.pState = p;
 				this.qState = q;
-				this.curPath = curPath;
+				this.depth = depth;
 			}
 			
 			public String toString()
 			{
-				return normalize(pState,qState).toString();
+				return StatePairSet.toString(normalize(pState,qState));
 			}
 		}
 		
-		protected final DisjointSets<Integer> equivClasses;
+		protected final UnionFind<Integer> equivClasses;
 		
-		protected HashSet<List<Integer>> equiv;
-		protected HashSet<List<Integer>> path;
+		protected StatePairSet equiv;
+		protected StatePairSet path;
+		protected final StatePairStack pathStack; //pairs from the start pair to the pair being tested
+		protected final MoveList outp;
+		protected final MoveList outq;
 		
 		private int maxDepth;
+		private int visits;
+		private int testDepth; //largest number of pairs on the path during the current test
 		
-		public EquivTest(DisjointSets<Integer> equivClasses, HashSet<List<Integer>> equiv, 
-				HashSet<List<Integer>> path)
+		public EquivTest(UnionFind<Integer> equivClasses, StatePairSet equiv, StatePairSet path)
 		{
 			this.equivClasses = equivClasses;
 			this.equiv = equiv;
 			this.path = path;
+			this.pathStack = new StatePairStack();
+			this.outp = new MoveList();
+			this.outq = new MoveList();
 			this.maxDepth = 0;
+			this.visits = 0;
+			this.testDepth = 0;
+		}
+		
+		protected void reset()
+		{
+			//prepares the test for the next pair, its sets keep their capacity
+			equiv.clear();
+			path.clear();
+			pathStack.clear();
+			maxDepth = 0;
+			testDepth = 0;
+		}
+		
+		protected int currentDepth()
+		{
+			//number of pairs on the path, including the one being visited
+			return pathStack.depth();
+		}
+		
+		protected void budgetCheck() throws TimeBudgetExceededException
+		{
+			//Called once per pair visited, reads the clock every BUDGET_CHECK_INTERVAL visits. A test that runs
+			//past the deadline is abandoned, minimize then returns the automaton merged from earlier tests.
+			int depth = currentDepth();
+			if (depth > testDepth)
+			{
+				testDepth = depth;
+			}
+			visits++;
+			if (visits % BUDGET_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+			{
+				throw new TimeBudgetExceededException(null);
+			}
 		}
 		
-		protected List<SFAInputMove<P,S>> findNonDisjointMoves(Collection<SFAInputMove<P, S>> outp, 
-				Collection<SFAInputMove<P, S>> outq) throws TimeoutException
+		protected int findNonDisjointMoves(MoveList outp, MoveList outq) throws TimeoutException
 		{
+			//Returns the index in outq of the first move whose guard overlaps with the first move of outp
 			//TODO: look into local minterm generation, can be more efficient?
 			assert(!outp.isEmpty() && !outq.isEmpty()); //TODO: remove assertions
-			SFAInputMove<P,S> pMove = outp.iterator().next();
-			P pGuard = pMove.guard;
-			for(SFAInputMove<P,S> qMove : outq)
+			P pGuard = outp.guard(0);
+			for(int i = 0; i < outq.size(); i++)
 			{
-				P qGuard = qMove.guard;
+				P qGuard = outq.guard(i);
 				P pqAnd = ba.MkAnd(pGuard, qGuard);
 				if(ba.IsSatisfiable(pqAnd))
 				{
-					return Arrays.asList(pMove,qMove);
+					return i;
 				}
 			}
-			return null;
+			return -1;
 		}
 		
 		public boolean isEquiv(Integer pStart, Integer qStart) throws TimeoutException
@@ -89,7 +206,7 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 			{
 				return false;
 			}
-			EquivRecord start = new EquivRecord(pStart,qStart,path);
+			EquivRecord start = new EquivRecord(pStart,qStart,0);
 			Stack<EquivRecord> testStack = new Stack<EquivRecord>();
 			testStack.add(start);
 			while (!testStack.isEmpty())
@@ -97,49 +214,51 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 				EquivRecord curEquivTest = testStack.pop();
 				Integer p = curEquivTest.pState;
 				Integer q = curEquivTest.qState;
-				HashSet<List<Integer>> curPath = curEquivTest.curPath;
-				List<Integer> pair = normalize(p,q);
-				HashSet<List<Integer>> newPath = new HashSet<List<Integer>>(curPath);
-				newPath.add(pair);
+				long pair = normalize(p,q);
+				pathStack.truncate(curEquivTest.depth); //drops pairs of subtrees that were already finished
+				pathStack.push(pair);
+				budgetCheck();
 				if (debug)
 				{
 					maxDepth += 1;
 				}
-				Collection<SFAInputMove<P,S>> outp = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(p));
-				Collection<SFAInputMove<P,S>> outq = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(q));
+				outp.load(compiled.indexOf(p));
+				outq.load(compiled.indexOf(q));
 				while(!outp.isEmpty() && !outq.isEmpty())
 				{			
-					List<SFAInputMove<P,S>> nonDisjointGuards = findNonDisjointMoves(outp, outq);
-					SFAInputMove<P,S> pMove = nonDisjointGuards.get(0);
-					SFAInputMove<P,S> qMove = nonDisjointGuards.get(1);
-					Integer pNextClass = equivClasses.find(pMove.to);
-					Integer qNextClass = equivClasses.find(qMove.to);
-					List<Integer> nextPair = normalize(pNextClass, qNextClass);
+					int qIndex = findNonDisjointMoves(outp, outq);
+					int pTo = outp.target(0);
+					P pGuard = outp.guard(0);
+					int qTo = outq.target(qIndex);
+					P qGuard = outq.guard(qIndex);
+					Integer pNextClass = equivClasses.find(compiled.stateAt(pTo));
+					Integer qNextClass = equivClasses.find(compiled.stateAt(qTo));
+					long nextPair = normalize(pNextClass, qNextClass);
 					if(!pNextClass.equals(qNextClass) && !equiv.contains(nextPair))
 					{
 						if(isKnownNotEqual(pNextClass,qNextClass))
 						{
-							this.path = newPath;
+							pathStack.addAllTo(path);
 							return false;
 						}
-						if (!newPath.contains(nextPair))
+						if (!pathStack.contains(nextPair))
 						{
 							equiv.add(nextPair);
-							EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, newPath);
+							EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, pathStack.depth());
 							testStack.push(nextTest);
 						}
 					}
-					outp.remove(pMove);
-					outq.remove(qMove);
-					P newPGuard = ba.MkAnd(pMove.guard, ba.MkNot(qMove.guard));
+					outp.remove(0);
+					outq.remove(qIndex);
+					P newPGuard = ba.MkAnd(pGuard, ba.MkNot(qGuard));
 					if (ba.IsSatisfiable(newPGuard))
 					{
-						outp.add(new SFAInputMove<P,S>(pMove.from, pMove.to, newPGuard));
+						outp.add(pTo, newPGuard);
 					}
-					P newQGuard = ba.MkAnd(qMove.guard, ba.MkNot(pMove.guard));
+					P newQGuard = ba.MkAnd(qGuard, ba.MkNot(pGuard));
 					if (ba.IsSatisfiable(newQGuard))
 					{
-						outq.add(new SFAInputMove<P,S>(qMove.from, qMove.to, newQGuard));
+						outq.add(qTo, newQGuard);
 					}
 				}
 			}
@@ -147,16 +266,21 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 			return true;
 		}
 		
-		public HashSet<List<Integer>> getEquiv()
+		public StatePairSet getEquiv()
 		{
 			return equiv;
 		}
 		
-		public HashSet<List<Integer>> getPath()
+		public StatePairSet getPath()
 		{
 			return path;
 		}
 		
+		public int getTestDepth()
+		{
+			return testDepth;
+		}
+		
 		public Integer getMaxDepth() throws DebugException
 		{
 			if (debug)
@@ -184,102 +308,158 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 	}
 	
 	protected final SFA<P,S> aut;
+	protected final CompiledSFA<P,S> compiled; //dense, array based view of aut used by the equivalence tests
 	protected final BooleanAlgebra<P,S> ba;
-	protected final int num_pairs;
+	protected final long num_pairs;
+	protected final MinimizationStats stats;
+	
+	protected static final int BUDGET_CHECK_INTERVAL = 16; //pair visits between clock reads during a test
 	
-	protected HashSet<List<Integer>> neq;
+	protected StatePairSet neq;
 	protected StateComparator stateComp;
-	private LinkedHashMap<Integer, Integer> distanceToFinalMap; //maps states to distance from final state, does not contain sink states
+	private int[] distanceToFinalMap; //maps dense state indices to distance from final state, MAX_VALUE for sink states
 	private Long startTime;
-	private LinkedHashMap<Long, Integer> record; //maps time stamps to number of states
+	private long deadline = Long.MAX_VALUE; //end of the time budget of the current minimize call
+	private EquivTest scratchTest; //reused by every pair of a minimize call
+	private UnionFind<Integer> lastEquivClasses; //classes found by the last minimize call, kept for applyDelta
+	private boolean lastRunComplete = false;
+	private StatePairSet retainedEquiv; //equivalent pairs carried over from the minimizer this one was derived from
+	private int[] retainedClass; //class of each unaffected state in a completed earlier run, -1 if affected
+	private List<Integer> affectedStates; //states with retainedClass -1, in the order of aut.getStates()
+	private TimeSeries record; //time stamps and number of classes after each merge of the last minimize call
+	private ProgressListener listener = null;
 	private Long singularRecord = null;
 	private boolean debug;
 	
 	public IncrementalMinimization(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
 	{
+		this(aut, ba, true);
+	}
+	
+	protected IncrementalMinimization(SFA<P,S> aut, BooleanAlgebra<P,S> ba, boolean keepsNeq)
+			throws TimeoutException
+	{
+		//subclasses keeping their non-equivalence knowledge elsewhere pass false and get an empty neq
+		this.stats = new MinimizationStats();
+		long constructStart = System.nanoTime();
+		ba = CountingBooleanAlgebra.wrap(ba, stats); //equivalence tests repeat the same guard operations many times
 		if (!aut.isDeterministic())
 		{
 			aut = aut.determinize(ba);
 		}
 		this.aut = aut.mkTotal(ba);
+		this.compiled = new CompiledSFA<P,S>(this.aut);
 		this.ba = ba;
 		this.debug=false;
-		this.num_pairs = aut.getStates().size() * aut.getStates().size();
-		this.neq = new HashSet<List<Integer>>(num_pairs, 0.9f); //won't exceed initial capacity
+		this.num_pairs = ((long) aut.getStates().size()) * aut.getStates().size();
+		//grows as pairs are found instead of reserving all n^2 pairs up front
+		this.neq = keepsNeq ? new StatePairSet(this.aut.stateCount()) : new StatePairSet();
 		this.distanceToFinalMap = generateDistanceToFinalMap();
 		this.stateComp = new StateComparator();
 		this.startTime = null;
-		this.record = new LinkedHashMap<Long, Integer>();
+		this.record = new TimeSeries(this.aut.stateCount()); //every recorded merge removes a class
+		stats.addPhaseTime("construct", System.nanoTime() - constructStart);
 	}
 	
-	protected EquivTest makeEquivTest(DisjointSets<Integer> equivClasses)
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
 	{
-		HashSet<List<Integer>> equiv = new HashSet<List<Integer>>(num_pairs,0.9f);
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>(num_pairs,0.9f);
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
 		return new EquivTest(equivClasses, equiv, path);
 	}
 	
-	protected List<Integer> normalize(Integer p, Integer q)
+	protected EquivTest getEquivTest(UnionFind<Integer> equivClasses)
+	{
+		//Tests are reset and reused instead of made per pair, so once their sets have grown to the
+		//largest test so far, testing a pair allocates nothing and clearing costs only what was touched.
+		if (scratchTest == null || scratchTest.equivClasses != equivClasses)
+		{
+			scratchTest = makeEquivTest(equivClasses);
+		}
+		else
+		{
+			scratchTest.reset();
+		}
+		return scratchTest;
+	}
+	
+	protected MoveList movesFrom(Integer state)
+	{
+		int stateIndex = compiled.indexOf(state);
+		MoveList moves = new MoveList(compiled.movesEnd(stateIndex) - compiled.movesStart(stateIndex));
+		moves.load(stateIndex);
+		return moves;
+	}
+	
+	protected long normalize(Integer p, Integer q)
 	{
-		List<Integer> pair;
 		if(stateComp.compare(p, q) < 0)
 		{
-			pair = Arrays.asList(p,q);
+			return StatePairSet.pack(p,q);
 		}
 		else
 		{
-			pair = Arrays.asList(q,p);
+			return StatePairSet.pack(q,p);
 		}
-		return pair;
 	}
 	
-	protected LinkedHashMap<Integer, Integer> generateDistanceToFinalMap()
+	protected int[] generateDistanceToFinalMap()
 	{
-		LinkedHashMap<Integer, Integer> distanceMap = new LinkedHashMap<Integer, Integer>();
-		Queue<Integer> stateQueue = new LinkedList<Integer>();
-		
-		for(Integer finalState : aut.getFinalStates())
+		int stateCount = compiled.stateCount();
+		int[] distanceMap = new int[stateCount];
+		Arrays.fill(distanceMap, Integer.MAX_VALUE);
+		int[] stateQueue = new int[stateCount]; //every state is queued at most once
+		int head = 0;
+		int tail = 0;
+		for(int state = 0; state < stateCount; state++)
 		{
-			stateQueue.add(finalState);
-			distanceMap.put(finalState, 0);
+			if(compiled.isFinal(state))
+			{
+				stateQueue[tail++] = state;
+				distanceMap[state] = 0;
+			}
 		}
-		while(!stateQueue.isEmpty())
+		while(head < tail)
 		{
-			Integer state = stateQueue.remove();
-			Integer distance = distanceMap.get(state);
-			for(SFAInputMove<P,S> t : aut.getInputMovesTo(state))
+			int state = stateQueue[head++];
+			int distance = distanceMap[state];
+			for(int t = compiled.incomingStart(state); t < compiled.incomingEnd(state); t++)
 			{
-				Integer prevState = t.from;
-				if(!distanceMap.containsKey(prevState))
+				int prevState = compiled.source(t);
+				if(distanceMap[prevState] == Integer.MAX_VALUE)
 				{
-					distanceMap.put(prevState, distance+1);
-					stateQueue.add(prevState);
+					distanceMap[prevState] = distance+1;
+					stateQueue[tail++] = prevState;
 				}
 			}
 		}
 		return distanceMap;
 	}
 	
-	protected Integer getStateDistanceToFinal(Integer state)
+	protected int getStateDistanceToFinal(Integer state)
 	{
-		if(distanceToFinalMap.containsKey(state))
-		{
-			return distanceToFinalMap.get(state);
-		}
-		else
-		{
-			return Integer.MAX_VALUE;
-		}
+		return distanceToFinalMap[compiled.indexOf(state)];
 	}
 	
 	protected boolean isKnownNotEqual(Integer p, Integer q)
 	{
-		List<Integer> normalizedPair = normalize(p,q);
+		if (retainedClass != null)
+		{
+			//unaffected states in different classes of the earlier run
+			int pClass = retainedClass[compiled.indexOf(p)];
+			int qClass = retainedClass[compiled.indexOf(q)];
+			if (pClass >= 0 && qClass >= 0 && pClass != qClass)
+			{
+				return true;
+			}
+		}
+		long normalizedPair = normalize(p,q);
 		if (neq.contains(normalizedPair))
 		{
+			stats.neqHit();
 			return true;
 		}
-		else if (!getStateDistanceToFinal(p).equals(getStateDistanceToFinal(q)))
+		else if (getStateDistanceToFinal(p) != getStateDistanceToFinal(q))
 		{
 			neq.add(normalizedPair);
 			return true;
@@ -290,20 +470,33 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 		}
 	}
 	
-	protected SFA<P,S> mergeSFAStates(DisjointSets<Integer> equivClasses) throws TimeoutException
+	protected SFA<P,S> mergeSFAStates(UnionFind<Integer> equivClasses) throws TimeoutException
 	{
-		//new SFA created with minimum states
-		HashMap<Integer, HashSet<Integer>> classes = equivClasses.getSets();
-		Set<Integer> newStates = classes.keySet();
-		Collection<SFAMove<P, S>> newTransitions = new LinkedList<SFAMove<P, S>>();
+		//New SFA with one state per class. States of a class are equivalent, so the moves of the class
+		//identifier alone lead into the right classes. Its guards into the same class are joined, giving at
+		//most one move per pair of classes.
+		Collection<SFAMove<P, S>> newTransitions = new ArrayList<SFAMove<P, S>>(compiled.moveCount());
 		Collection<Integer> newFinalStates = new HashSet<Integer>();
-		for (Integer p : newStates)
+		LinkedHashMap<Integer, P> guardsTo = new LinkedHashMap<Integer, P>(); //target class to joined guard
+		for (int state = 0; state < compiled.stateCount(); state++)
 		{
-			for (SFAInputMove<P,S> t : aut.getInputMovesFrom(classes.get(p)))
+			Integer p = compiled.stateAt(state);
+			if (!equivClasses.find(p).equals(p))
+			{
+				continue;
+			}
+			guardsTo.clear();
+			for (int move = compiled.movesStart(state); move < compiled.movesEnd(state); move++)
 			{
-				newTransitions.add(new SFAInputMove<P,S>(p, equivClasses.find(t.to), t.guard));
+				Integer toClass = equivClasses.find(compiled.stateAt(compiled.target(move)));
+				P guard = guardsTo.get(toClass);
+				guardsTo.put(toClass, (guard == null) ? compiled.guard(move) : ba.MkOr(guard, compiled.guard(move)));
 			}
-			if(aut.isFinalState(p))
+			for (Map.Entry<Integer, P> move : guardsTo.entrySet())
+			{
+				newTransitions.add(new SFAInputMove<P,S>(p, move.getKey(), move.getValue()));
+			}
+			if (compiled.isFinal(state))
 			{
 				newFinalStates.add(p);
 			}
@@ -313,113 +506,213 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 		return minAut;
 	}
 	
-	protected void updateRecord(DisjointSets<Integer> equivClasses)
+	protected void updateRecord(UnionFind<Integer> equivClasses, boolean recordMinimization)
 	{
-		Long time = System.nanoTime();
-		record.put(time, equivClasses.getSets().size());
+		//the class count is kept up to date by the union-find, so recording is O(1)
+		long time = System.nanoTime();
+		int classCount = equivClasses.size();
+		if (recordMinimization)
+		{
+			record.add(time, classCount);
+		}
+		if (listener != null)
+		{
+			listener.progress(time - startTime, classCount);
+		}
 	}
 	
-	protected void timeCheck(long endTime, DisjointSets<Integer> equivClasses) throws TimeoutException
+	protected void timeCheck(long endTime, UnionFind<Integer> equivClasses) throws TimeoutException
 	{
 		if(System.nanoTime() > endTime)
 		{
-			//Time Budget exceeded
-			SFA<P,S> curAut = mergeSFAStates(equivClasses);
-			double exceeded = (new Double(System.nanoTime()-endTime))/1000000;
-			System.out.println(String.format("Exceeded by %f ms", exceeded));
-			throw new TimeBudgetExceededException(curAut);
-			/* Current time budget implementation intended to test % of automata minimization given
-			 * a set period of time. However, it does not necessarily return this mostly minimized
-			 * automata exactly after the budget is met (this is definitely possible, just not with
-			 * present implementation), i.e. there will likely be a delay between the exceeding of time
-			 * budget and the returning of a partially minimized automata.
-			 */
+			//Time Budget exceeded, minimize merges the partial automaton once the pair loop has stopped
+			throw new TimeBudgetExceededException(null);
 		}
 	}
 	
-	public SFA<P, S> minimize(long budget, boolean recordMinimization, boolean debug) 
-			throws TimeoutException, DebugException
+	protected UnionFind<Integer> makeEquivClasses()
 	{
-		this.startTime = System.nanoTime();
-		this.debug = debug;
-		long endTime = startTime + budget;
-		if (endTime < 0) //indicates overflow
+		DisjointSets<Integer> equivClasses = new DisjointSets<Integer>();
+		for(Integer q : aut.getStates())
 		{
-			endTime = Long.MAX_VALUE;
+			equivClasses.make(q);
 		}
-		if(aut.isEmpty())
+		return equivClasses;
+	}
+	
+	protected void addRetainedEquivalences(UnionFind<Integer> equivClasses)
+	{
+		if (retainedEquiv == null)
 		{
-			if(recordMinimization)
+			return;
+		}
+		for (long pair : retainedEquiv.toArray())
+		{
+			equivClasses.union(StatePairSet.first(pair), StatePairSet.second(pair));
+			stats.union();
+		}
+	}
+	
+	protected boolean[] statesReaching(Collection<Integer> targets)
+	{
+		//reverse reachability in compiled, indexed by dense state index
+		boolean[] reaching = new boolean[compiled.stateCount()];
+		int[] stateQueue = new int[compiled.stateCount()];
+		int head = 0;
+		int tail = 0;
+		for (Integer target : targets)
+		{
+			if (compiled.contains(target) && !reaching[compiled.indexOf(target)])
 			{
-				this.singularRecord = System.nanoTime() - startTime;
+				reaching[compiled.indexOf(target)] = true;
+				stateQueue[tail++] = compiled.indexOf(target);
 			}
-			return SFA.getEmptySFA(ba);
 		}
-		DisjointSets<Integer> equivClasses = new DisjointSets<Integer>();
-		for(Integer q : aut.getStates())
+		while (head < tail)
 		{
-			equivClasses.make(q);
+			int state = stateQueue[head++];
+			for (int t = compiled.incomingStart(state); t < compiled.incomingEnd(state); t++)
+			{
+				int prevState = compiled.source(t);
+				if (!reaching[prevState])
+				{
+					reaching[prevState] = true;
+					stateQueue[tail++] = prevState;
+				}
+			}
 		}
+		return reaching;
+	}
+	
+	protected void addNonEquivalent(StatePairSet path)
+	{
+		neq.addAll(path);
+	}
+	
+	protected void testPairs(UnionFind<Integer> equivClasses, long endTime, boolean recordMinimization)
+			throws TimeoutException, DebugException
+	{
 		for(Integer p : aut.getStates())
 		{
-			for(Integer q : aut.getStates())
+			testPairsFrom(p, equivClasses, endTime, recordMinimization);
+		}
+	}
+	
+	protected void testPairsFrom(Integer p, UnionFind<Integer> equivClasses, long endTime, 
+			boolean recordMinimization) throws TimeoutException, DebugException
+	{
+		//tests p against every later state q in the state order
+		Collection<Integer> candidates = aut.getStates();
+		if (retainedClass != null && retainedClass[compiled.indexOf(p)] >= 0)
+		{
+			candidates = affectedStates; //p is settled against every other unaffected state
+		}
+		for(Integer q : candidates)
+		{
+			if(stateComp.compare(q,p) <= 0)
 			{
-				if(stateComp.compare(q,p) <= 0)
+				if (getStateDistanceToFinal(p) < getStateDistanceToFinal(q))
 				{
-					if (getStateDistanceToFinal(p) < getStateDistanceToFinal(q))
-					{
-						break; //All later qs will be inequivalent
-					}
-					else
-					{
-						continue;
-					}
+					break; //All later qs will be inequivalent
 				}
-				if(isKnownNotEqual(p,q))
+				else
 				{
 					continue;
 				}
-				else if(equivClasses.find(p) == equivClasses.find(q))
+			}
+			if(isKnownNotEqual(p,q))
+			{
+				continue;
+			}
+			else if(equivClasses.find(p) == equivClasses.find(q))
+			{
+				//Already found p,q equivalent
+				continue;
+			}
+			timeCheck(endTime, equivClasses);
+			EquivTest pEquiv = getEquivTest(equivClasses);
+			stats.pairTested();
+			boolean isequiv = pEquiv.isEquiv(p, q);
+			stats.equivTest(isequiv, pEquiv.getTestDepth());
+			StatePairSet equiv = pEquiv.getEquiv();
+			StatePairSet path = pEquiv.getPath();
+			if(isequiv)
+			{
+				//p,q found equivalent. Other pairs may be found equivalent.
+				for(long equivPair : equiv.toArray())
 				{
-					//Already found p,q equivalent
-					continue;
+					equivClasses.union(StatePairSet.first(equivPair), StatePairSet.second(equivPair));
+					stats.union();
 				}
-				//TODO: look into efficiency of HashSet operations, ideally should be O(1) for searching, inserting, removing
-				timeCheck(endTime, equivClasses);
-				EquivTest pEquiv = makeEquivTest(equivClasses);
-				boolean isequiv = pEquiv.isEquiv(p, q);
-				HashSet<List<Integer>> equiv = pEquiv.getEquiv();
-				HashSet<List<Integer>> path = pEquiv.getPath();
-				if(isequiv)
+				if(recordMinimization || listener != null)
 				{
-					//p,q found equivalent. Other pairs may be found equivalent.
-					for(List<Integer> equivPair : equiv)
-					{
-						equivClasses.union(equivPair.get(0), equivPair.get(1));
-					}
-					if(recordMinimization)
-					{
-						updateRecord(equivClasses);
-					}
-					if (debug)
-					{
-						throw new DebugException("finished first equiv test", pEquiv.getMaxDepth());
-					}
-					timeCheck(endTime, equivClasses);
+					updateRecord(equivClasses, recordMinimization);
 				}
-				else
+				if (debug)
 				{
-					timeCheck(endTime, equivClasses);
-					//p,q found non-equivalent. Other pairs may be found non-equivalent.
-					for(List<Integer> pathPair : path)
-					{
-						neq.add(pathPair);
-					}
+					throw new DebugException("finished first equiv test", pEquiv.getMaxDepth());
 				}
+				timeCheck(endTime, equivClasses);
+			}
+			else
+			{
+				timeCheck(endTime, equivClasses);
+				//p,q found non-equivalent. Other pairs may be found non-equivalent.
+				addNonEquivalent(path);
 			}
 		}
-		
-		return mergeSFAStates(equivClasses);
+	}
+	
+	public SFA<P, S> minimize(long budget, boolean recordMinimization, boolean debug) 
+			throws TimeoutException, DebugException
+	{
+		this.startTime = System.nanoTime();
+		this.debug = debug;
+		this.record.clear();
+		this.singularRecord = null;
+		long endTime = startTime + budget;
+		if (endTime < 0) //indicates overflow
+		{
+			endTime = Long.MAX_VALUE;
+		}
+		if(aut.isEmpty())
+		{
+			if(recordMinimization)
+			{
+				this.singularRecord = System.nanoTime() - startTime;
+			}
+			return SFA.getEmptySFA(ba);
+		}
+		this.deadline = endTime;
+		UnionFind<Integer> equivClasses = makeEquivClasses();
+		addRetainedEquivalences(equivClasses);
+		this.lastEquivClasses = equivClasses;
+		this.lastRunComplete = false;
+		long testStart = System.nanoTime();
+		try
+		{
+			testPairs(equivClasses, endTime, recordMinimization);
+		}
+		catch(TimeBudgetExceededException e)
+		{
+			//Tests are checked against the deadline every BUDGET_CHECK_INTERVAL pair visits, so the
+			//overshoot is bounded by that many visits plus the merge below.
+			stats.addPhaseTime("tests", System.nanoTime() - testStart);
+			SFA<P,S> curAut = timedMerge(equivClasses);
+			stats.budgetOverrun(Math.max(System.nanoTime() - endTime, 0));
+			throw new TimeBudgetExceededException(curAut);
+		}
+		stats.addPhaseTime("tests", System.nanoTime() - testStart);
+		this.lastRunComplete = true;
+		return timedMerge(equivClasses);
+	}
+	
+	private SFA<P,S> timedMerge(UnionFind<Integer> equivClasses) throws TimeoutException
+	{
+		long mergeStart = System.nanoTime();
+		SFA<P,S> minAut = mergeSFAStates(equivClasses);
+		stats.addPhaseTime("merge", System.nanoTime() - mergeStart);
+		return minAut;
 	}
 	
 	public SFA<P,S> minimize(long budget) throws TimeoutException
@@ -437,11 +730,115 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 		return minAut;
 	}
 	
+	public SFA<P,S> minimizeWithFallback(long budget) throws TimeoutException
+	{
+		//Minimizes incrementally until the budget runs out, Hopcroft then finishes the partially minimized automaton
+		return minimizeWithFallback(budget, Long.MAX_VALUE);
+	}
+	
+	public SFA<P,S> minimizeWithFallback(long budget, long timeout) throws TimeoutException
+	{
+		//As above, Hopcroft gets what is left of timeout ns and throws a TimeoutException if that runs out
+		long start = System.nanoTime();
+		try
+		{
+			return minimize(Math.min(budget, timeout));
+		}
+		catch (TimeBudgetExceededException e)
+		{
+			@SuppressWarnings("unchecked")
+			SFA<P,S> partialAut = (SFA<P,S>) e.getReturnAut();
+			HopcroftMinimization<P,S> fallback = new HopcroftMinimization<P,S>(partialAut, ba);
+			SFA<P,S> minAut = fallback.minimize(timeout - (System.nanoTime() - start));
+			stats.addAll(fallback.getStats()); //its phases are named apart from the incremental ones
+			return minAut;
+		}
+	}
+	
 	public SFA<P,S> minimize() throws TimeoutException
 	{
 		return minimize(Long.MAX_VALUE);
 	}
 	
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		//minimizer of the same kind and options for an edited automaton, overridden by every subclass
+		return new IncrementalMinimization<P,S>(editedAut, ba);
+	}
+	
+	public IncrementalMinimization<P,S> applyDelta(SFADelta<P,S> delta) throws TimeoutException
+	{
+		/* Returns a minimizer for this automaton (see getAutomaton) with delta applied, which starts from the
+		 * classes found by the last minimize call. A state that can not reach an edited state keeps its
+		 * language, so unaffected states stay merged with their class. If that call ran to completion,
+		 * unaffected states of different classes are also known to be inequivalent and only pairs with an
+		 * affected state are tested again. If the edits make the automaton nondeterministic, determinizing
+		 * renames the states and nothing is carried over.
+		 */
+		SFA<P,S> editedAut = delta.applyTo(aut, ba);
+		IncrementalMinimization<P,S> next = derive(editedAut);
+		next.listener = listener;
+		if (!editedAut.isDeterministic() || lastEquivClasses == null)
+		{
+			return next;
+		}
+		boolean[] affected = statesReaching(delta.getEditedStates());
+		next.retainedEquiv = new StatePairSet();
+		if (lastRunComplete)
+		{
+			next.retainedClass = new int[next.compiled.stateCount()];
+			Arrays.fill(next.retainedClass, -1);
+		}
+		//unaffected states of a class are joined to the first of them, whether or not the root is affected
+		HashMap<Integer, Integer> anchors = new HashMap<Integer, Integer>();
+		for (Integer state : aut.getStates())
+		{
+			if (affected[compiled.indexOf(state)] || !next.compiled.contains(state))
+			{
+				continue;
+			}
+			Integer root = lastEquivClasses.find(state);
+			Integer anchor = anchors.get(root);
+			if (anchor == null)
+			{
+				anchor = state;
+				anchors.put(root, anchor);
+			}
+			else
+			{
+				next.retainedEquiv.add(StatePairSet.pack(anchor, state));
+			}
+			if (lastRunComplete)
+			{
+				next.retainedClass[next.compiled.indexOf(state)] = compiled.indexOf(anchor);
+			}
+		}
+		if (lastRunComplete)
+		{
+			next.affectedStates = new ArrayList<Integer>();
+			for (Integer state : next.aut.getStates())
+			{
+				if (next.retainedClass[next.compiled.indexOf(state)] < 0)
+				{
+					next.affectedStates.add(state);
+				}
+			}
+		}
+		return next;
+	}
+	
+	public MinimizationStats getStats()
+	{
+		//filled in by the constructor and every minimize call, including a Hopcroft fallback
+		return stats;
+	}
+	
+	public SFA<P,S> getAutomaton()
+	{
+		//the total, deterministic automaton being minimized, deltas are given in terms of its states
+		return aut;
+	}
+	
 	public LinkedHashMap<Long, Integer> getRecord() throws TimeoutException
 	{
 		LinkedHashMap<Long,Integer> actualRecord = new LinkedHashMap<Long, Integer>();
@@ -451,12 +848,24 @@ public class IncrementalMinimization<P,S> implements MinimizationAlgorithm<P,S>
 			actualRecord.put(singularRecord, 1);
 			return actualRecord;
 		}
-		for(Long time : record.keySet())
+		for(int i = 0; i < record.size(); i++)
 		{
-			assert(time > this.startTime);
-			actualRecord.put(time -this.startTime, record.get(time));
+			assert(record.time(i) > this.startTime);
+			actualRecord.put(record.time(i) - this.startTime, record.value(i));
 		}
 		return actualRecord;
 	}
 	
+	public TimeSeries getRecordSeries()
+	{
+		//samples of getRecord without the initial one, time stamps are System.nanoTime values
+		return record;
+	}
+	
+	public void setProgressListener(ProgressListener listener)
+	{
+		//listener is told of every merge, whether or not the minimization is recorded
+		this.listener = listener;
+	}
+	
 }
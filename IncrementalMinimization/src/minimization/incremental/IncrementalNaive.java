@@ -1,20 +1,21 @@
 package minimization.incremental;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import minimization.incremental.IncrementalMinimization.EquivTest;
 import minimization.incremental.IncrementalMinimization.EquivTest.EquivRecord;
 
 import org.sat4j.specs.TimeoutException;
 
-import structures.DisjointSets;
+import structures.LRUCache;
 import structures.MintermTree;
+import structures.StatePairSet;
+import structures.UnionFind;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
-import automata.sfa.SFAInputMove;
 
 
 public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
@@ -23,28 +24,12 @@ public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
 	private class EquivTestNaive extends EquivTest
 	{
 		
-		public EquivTestNaive(DisjointSets<Integer> equivClasses, HashSet<List<Integer>> equiv, 
-				HashSet<List<Integer>> path)
+		public EquivTestNaive(UnionFind<Integer> equivClasses, StatePairSet equiv, 
+				StatePairSet path)
 		{
 			super(equivClasses, equiv, path);
 		}
 		
-		private Integer mintermTransition(Integer state, P minterm) throws TimeoutException
-		{
-			Integer toState = null;
-			for (SFAInputMove<P,S> t : aut.getInputMovesFrom(state))
-			{
-				if (ba.IsSatisfiable(ba.MkAnd(minterm, t.guard)))
-				{
-					//aut is deterministic and complete. So, always one and exactly one transition per minterm.
-					toState = t.to;
-					break;
-				}
-			}
-			assert(toState != null);
-			return toState;
-		}
-		
 		@Override
 		public boolean isEquiv(Integer pStart, Integer qStart) throws TimeoutException
 		{
@@ -52,7 +37,7 @@ public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
 			{
 				return false;
 			}
-			EquivRecord start = new EquivRecord(pStart,qStart,path);
+			EquivRecord start = new EquivRecord(pStart,qStart,0);
 			Stack<EquivRecord> testStack = new Stack<EquivRecord>();
 			testStack.add(start);
 			while (!testStack.isEmpty())
@@ -60,15 +45,33 @@ public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
 				EquivRecord curEquivTest = testStack.pop();
 				Integer p = curEquivTest.pState;
 				Integer q = curEquivTest.qState;
-				HashSet<List<Integer>> curPath = curEquivTest.curPath;
-				List<Integer> pair = normalize(p,q);
-				HashSet<List<Integer>> newPath = new HashSet<List<Integer>>(curPath);
-				newPath.add(pair);
-				for (P minterm : minterms)
+				long pair = normalize(p,q);
+				pathStack.truncate(curEquivTest.depth);
+				pathStack.push(pair);
+				budgetCheck();
+				int[] pSuccessors;
+				int[] qSuccessors;
+				if (localMinterms)
+				{
+					int[][] successors = localSuccessors(pair);
+					boolean pFirst = p.equals(StatePairSet.first(pair));
+					pSuccessors = successors[pFirst ? 0 : 1];
+					qSuccessors = successors[pFirst ? 1 : 0];
+				}
+				else
+				{
+					pSuccessors = successorTable[compiled.indexOf(p)];
+					qSuccessors = successorTable[compiled.indexOf(q)];
+				}
+				for (int m = 0; m < pSuccessors.length; m++)
 				{
-					Integer pNextClass = equivClasses.find(mintermTransition(p, minterm));
-					Integer qNextClass = equivClasses.find(mintermTransition(q, minterm));
-					List<Integer> nextPair = normalize(pNextClass, qNextClass);
+					if (pSuccessors[m] == qSuccessors[m])
+					{
+						continue;
+					}
+					Integer pNextClass = equivClasses.find(compiled.stateAt(pSuccessors[m]));
+					Integer qNextClass = equivClasses.find(compiled.stateAt(qSuccessors[m]));
+					long nextPair = normalize(pNextClass, qNextClass);
 					if (!pNextClass.equals(qNextClass) && !equiv.contains(nextPair))
 					{
 						equiv.add(nextPair);
@@ -76,10 +79,10 @@ public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
 						{
 							return false;
 						}
-						if(!newPath.contains(nextPair))
+						if(!pathStack.contains(nextPair))
 						{
 							equiv.add(nextPair);
-							EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, newPath);
+							EquivRecord nextTest = new EquivRecord(pNextClass, qNextClass, pathStack.depth());
 							testStack.push(nextTest);
 						}
 					}
@@ -90,19 +93,131 @@ public class IncrementalNaive<P,S> extends IncrementalMinimization<P,S>
 		}
 	}
 	
-	private final ArrayList<P> minterms;
+	public static final int LOCAL_CACHE_SIZE = 1 << 16; //pairs whose local successors are kept
+	
+	private final boolean localMinterms;
+	private final ForkJoinPool mintermPool; //null if the global minterms are generated sequentially
+	private final ArrayList<P> minterms; //global minterms, null if every pair gets its own
+	private final int[][] successorTable; //dense state index and minterm index to dense successor index
+	private final LRUCache<Long, int[][]> localCache; //pair to the successors of its two states, first state first
 	
 	public IncrementalNaive(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
 	{
+		this(aut, ba, false);
+	}
+	
+	public IncrementalNaive(SFA<P,S> aut, BooleanAlgebra<P,S> ba, boolean localMinterms) throws TimeoutException
+	{
+		this(aut, ba, localMinterms, null);
+	}
+	
+	public IncrementalNaive(SFA<P,S> aut, BooleanAlgebra<P,S> ba, ForkJoinPool mintermPool) throws TimeoutException
+	{
+		this(aut, ba, false, mintermPool);
+	}
+	
+	private IncrementalNaive(SFA<P,S> aut, BooleanAlgebra<P,S> ba, boolean localMinterms, ForkJoinPool mintermPool)
+			throws TimeoutException
+	{
+		//With localMinterms, each tested pair is split by the minterms of its own two states' guards
+		//instead of a table over the minterms of the whole automaton, which can be far too many.
+		//Given a mintermPool, the global minterms are generated by tasks in that pool.
 		super(aut,ba);
-		minterms = MintermTree.generate_minterms(aut, ba);
+		this.localMinterms = localMinterms;
+		this.mintermPool = mintermPool;
+		if (localMinterms)
+		{
+			minterms = null;
+			successorTable = null;
+			localCache = new LRUCache<Long, int[][]>(LOCAL_CACHE_SIZE);
+		}
+		else
+		{
+			localCache = null;
+			if (mintermPool == null)
+			{
+				minterms = MintermTree.generate_minterms(this.aut, this.ba);
+			}
+			else
+			{
+				minterms = MintermTree.generate_minterms_parallel(this.aut, this.ba, mintermPool);
+			}
+			successorTable = generateSuccessorTable();
+		}
+	}
+	
+	private List<S> witnessesOf(List<P> minterms) throws TimeoutException
+	{
+		List<S> witnesses = new ArrayList<S>(minterms.size());
+		for (P minterm : minterms)
+		{
+			witnesses.add(ba.generateWitness(minterm));
+		}
+		return witnesses;
+	}
+	
+	private int[] successors(int state, List<S> witnesses) throws TimeoutException
+	{
+		//A minterm lies inside or outside of every guard, so the move taking its witness takes all of it
+		int[] successors = new int[witnesses.size()];
+		for (int m = 0; m < witnesses.size(); m++)
+		{
+			int toState = -1;
+			for (int t = compiled.movesStart(state); t < compiled.movesEnd(state); t++)
+			{
+				if (ba.HasModel(compiled.guard(t), witnesses.get(m)))
+				{
+					//aut is deterministic and complete. So, always one and exactly one transition per minterm.
+					toState = compiled.target(t);
+					break;
+				}
+			}
+			assert(toState >= 0);
+			successors[m] = toState;
+		}
+		return successors;
+	}
+	
+	private int[][] localSuccessors(long pair) throws TimeoutException
+	{
+		//the same pair comes up again in later tests, its minterms and witnesses are only generated once
+		int[][] successors = localCache.get(pair);
+		if (successors == null)
+		{
+			Integer first = StatePairSet.first(pair);
+			Integer second = StatePairSet.second(pair);
+			List<S> witnesses = witnessesOf(MintermTree.generate_local_minterms(aut, first, second, ba));
+			successors = new int[][] {successors(compiled.indexOf(first), witnesses),
+					successors(compiled.indexOf(second), witnesses)};
+			localCache.put(pair, successors);
+		}
+		return successors;
+	}
+	
+	private int[][] generateSuccessorTable() throws TimeoutException
+	{
+		//Resolves the successor of every state under every minterm once, so equivalence tests
+		//only compare state indices and never query the algebra.
+		List<S> witnesses = witnessesOf(minterms);
+		int[][] table = new int[compiled.stateCount()][];
+		for (int state = 0; state < compiled.stateCount(); state++)
+		{
+			table[state] = successors(state, witnesses);
+		}
+		return table;
 	}
 	
 	@Override
-	protected EquivTest makeEquivTest(DisjointSets<Integer> equivClasses)
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
 	{
-		HashSet<List<Integer>> equiv = new HashSet<List<Integer>>(num_pairs,0.9f);
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>(num_pairs,0.9f);
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
 		return new EquivTestNaive(equivClasses, equiv, path);
 	}
+	
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrementalNaive<P,S>(editedAut, ba, localMinterms, mintermPool);
+	}
 }
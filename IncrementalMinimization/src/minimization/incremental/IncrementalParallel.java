@@ -0,0 +1,190 @@
+package minimization.incremental;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import minimization.DebugException;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.ConcurrentDisjointSets;
+import structures.ConcurrentStatePairSet;
+import structures.StatePairSet;
+import structures.UnionFind;
+import theory.BooleanAlgebra;
+import automata.sfa.SFA;
+
+public class IncrementalParallel<P,S> extends IncrementalMinimization<P,S>
+{
+	/* Runs the outer pair loop on a ForkJoinPool, one task per state p testing p against all later states.
+	 * Tasks share non-equivalence knowledge through a ConcurrentStatePairSet and the equivalence classes
+	 * through a lock free ConcurrentDisjointSets. A test only ever unions pairs it proved equivalent and only
+	 * marks pairs non-equivalent along a path to a known non-equivalent pair, so facts found by other
+	 * tasks in the meantime can not make it wrong, and every candidate pair is still decided exactly once.
+	 * The boolean algebra must be safe to call from several threads.
+	 */
+
+	private final int parallelism;
+	private final ConcurrentStatePairSet sharedNeq;
+	private final ThreadLocal<EquivTest> scratchTests; //one reusable test per worker thread
+
+	public IncrementalParallel(SFA<P,S> aut, BooleanAlgebra<P,S> ba, int parallelism) throws TimeoutException
+	{
+		super(aut, ba, false); //non-equivalence knowledge is kept in sharedNeq instead
+		this.parallelism = parallelism;
+		this.sharedNeq = new ConcurrentStatePairSet(this.aut.stateCount()); //grows like neq does
+		this.scratchTests = new ThreadLocal<EquivTest>();
+	}
+
+	public IncrementalParallel(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		this(aut, ba, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Override
+	protected boolean isKnownNotEqual(Integer p, Integer q)
+	{
+		long normalizedPair = normalize(p,q);
+		if (sharedNeq.contains(normalizedPair))
+		{
+			stats.neqHit();
+			return true;
+		}
+		else if (getStateDistanceToFinal(p) != getStateDistanceToFinal(q))
+		{
+			sharedNeq.add(normalizedPair);
+			return true;
+		}
+		else
+		{
+			return false;
+		}
+	}
+
+	@Override
+	protected void addNonEquivalent(StatePairSet path)
+	{
+		sharedNeq.addAll(path);
+	}
+
+	@Override
+	protected EquivTest getEquivTest(UnionFind<Integer> equivClasses)
+	{
+		EquivTest test = scratchTests.get();
+		if (test == null || test.equivClasses != equivClasses)
+		{
+			test = makeEquivTest(equivClasses);
+			scratchTests.set(test);
+		}
+		else
+		{
+			test.reset();
+		}
+		return test;
+	}
+
+	@Override
+	protected UnionFind<Integer> makeEquivClasses()
+	{
+		return new ConcurrentDisjointSets<Integer>(aut.getStates());
+	}
+
+	@Override
+	protected synchronized void updateRecord(UnionFind<Integer> equivClasses, boolean recordMinimization)
+	{
+		super.updateRecord(equivClasses, recordMinimization);
+	}
+
+	@Override
+	protected void testPairs(UnionFind<Integer> equivClasses, long endTime, boolean recordMinimization)
+			throws TimeoutException, DebugException
+	{
+		//an exceeded budget stops every task at its next check, the partial automaton is merged
+		//by minimize once all of them have returned
+		if (parallelism <= 1)
+		{
+			super.testPairs(equivClasses, endTime, recordMinimization);
+		}
+		else
+		{
+			testPairsInParallel(equivClasses, endTime, recordMinimization);
+		}
+	}
+
+	private void testPairsInParallel(final UnionFind<Integer> equivClasses, final long endTime,
+			final boolean recordMinimization) throws TimeoutException, DebugException
+	{
+		//tasks hand back their checked exceptions as results, so the pool never has to wrap them
+		List<Callable<Exception>> tasks = new ArrayList<Callable<Exception>>();
+		for (final Integer p : aut.getStates())
+		{
+			tasks.add(new Callable<Exception>()
+			{
+				public Exception call()
+				{
+					try
+					{
+						testPairsFrom(p, equivClasses, endTime, recordMinimization);
+						return null;
+					}
+					catch (TimeoutException e)
+					{
+						return e;
+					}
+					catch (DebugException e)
+					{
+						return e;
+					}
+				}
+			});
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			Exception failure = null;
+			for (Future<Exception> task : pool.invokeAll(tasks))
+			{
+				Exception result;
+				try
+				{
+					result = task.get();
+				}
+				catch (ExecutionException e)
+				{
+					throw new RuntimeException(e.getCause());
+				}
+				if (result instanceof DebugException)
+				{
+					throw (DebugException) result;
+				}
+				else if (result != null && failure == null)
+				{
+					failure = result;
+				}
+			}
+			if (failure != null)
+			{
+				throw (TimeoutException) failure;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while minimizing");
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrementalParallel<P,S>(editedAut, ba, parallelism);
+	}
+}
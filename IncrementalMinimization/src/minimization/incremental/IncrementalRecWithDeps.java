@@ -1,9 +1,6 @@
 package minimization.incremental;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,7 +9,8 @@ import minimization.incremental.IncrementalMinimization.EquivTest;
 import org.sat4j.specs.TimeoutException;
 
 import structures.DependencyGraph;
-import structures.DisjointSets;
+import structures.StatePairSet;
+import structures.UnionFind;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
@@ -23,12 +21,55 @@ public class IncrementalRecWithDeps<P,S> extends IncrementalMinimization<P,S>
 	private class EquivTestRecursive extends EquivTest
 	{
 		private DependencyGraph deps;
+		private final StatePairSet closureTested;
+		private final StatePairSet closureUntested;
 		
-		public EquivTestRecursive(DisjointSets<Integer> equivClasses, HashSet<List<Integer>> equiv, 
-				HashSet<List<Integer>> path)
+		public EquivTestRecursive(UnionFind<Integer> equivClasses, StatePairSet equiv, 
+				StatePairSet path)
 		{
 			super(equivClasses, equiv, path);
 			this.deps = new DependencyGraph();
+			this.closureTested = new StatePairSet();
+			this.closureUntested = new StatePairSet();
+		}
+		
+		@Override
+		protected void reset()
+		{
+			super.reset();
+			if (!sharedDependencies)
+			{
+				deps.clear();
+			}
+		}
+		
+		@Override
+		protected int currentDepth()
+		{
+			return path.size(); //the recursion keeps its path in the set only
+		}
+		
+		private long[] reusableDependencies(long nextPair)
+		{
+			//A pair tested by an earlier test of this minimize call is assumed like the pairs of this test, along
+			//with the tested pairs it depends on. Returns the untested pairs they wait for, which still have to
+			//be tested, or null if the pair has to be tested itself.
+			closureTested.clear();
+			closureUntested.clear();
+			if (!deps.collectClosure(nextPair, equivClasses, equiv, closureTested, closureUntested))
+			{
+				return null;
+			}
+			long[] untested = closureUntested.toArray();
+			for (long untestedPair : untested)
+			{
+				if (isKnownNotEqual(StatePairSet.first(untestedPair), StatePairSet.second(untestedPair)))
+				{
+					return null;
+				}
+			}
+			equiv.addAll(closureTested);
+			return untested;
 		}
 		
 		public boolean isEquivRecursive(Integer p, Integer q) throws TimeoutException
@@ -37,48 +78,72 @@ public class IncrementalRecWithDeps<P,S> extends IncrementalMinimization<P,S>
 			{
 				return false;
 			}
-			List<Integer> pair = normalize(p,q);
+			long pair = normalize(p,q);
 			if (path.contains(pair))
 			{
 				return true;
 			}
 			path.add(pair);
-			Collection<SFAInputMove<P, S>> outp = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(p));
-			Collection<SFAInputMove<P, S>> outq = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(q));
+			budgetCheck();
+			MoveList outp = movesFrom(p);
+			MoveList outq = movesFrom(q);
 			while (!outp.isEmpty() && !outq.isEmpty())
 			{
-				List<SFAInputMove<P,S>> nonDisjointGuards = findNonDisjointMoves(outp,outq);
-				SFAInputMove<P,S> pMove = nonDisjointGuards.get(0);
-				SFAInputMove<P,S> qMove = nonDisjointGuards.get(1);
+				int qIndex = findNonDisjointMoves(outp,outq);
+				int pTo = outp.target(0);
+				P pGuard = outp.guard(0);
+				int qTo = outq.target(qIndex);
+				P qGuard = outq.guard(qIndex);
 				//note: we don't actually need to generate a witness, only need to know pMove,qMove are non-disjoint
-				Integer pNextClass = equivClasses.find(pMove.to);
-				Integer qNextClass = equivClasses.find(qMove.to);
-				List<Integer> nextPair = normalize(pNextClass, qNextClass);
-				if(equiv.contains(nextPair) || path.contains(nextPair))
+				Integer pNextClass = equivClasses.find(compiled.stateAt(pTo));
+				Integer qNextClass = equivClasses.find(compiled.stateAt(qTo));
+				long nextPair = normalize(pNextClass, qNextClass);
+				if(!pNextClass.equals(qNextClass))
 				{
-					deps.addDependency(pair, nextPair);
+					deps.addDependency(pair, nextPair); //also to pairs tested below, their result may rest on the path
 				}
 				if ( !pNextClass.equals(qNextClass) && !equiv.contains(nextPair))
 				{
-					equiv.add(nextPair);
-					if (!isEquivRecursive(pNextClass, qNextClass))
+					long[] untested = sharedDependencies ? reusableDependencies(nextPair) : null;
+					if (untested != null)
 					{
-						return false;
+						for (long untestedPair : untested)
+						{
+							if (!equiv.contains(untestedPair))
+							{
+								equiv.add(untestedPair);
+								Integer pUntested = StatePairSet.first(untestedPair);
+								Integer qUntested = StatePairSet.second(untestedPair);
+								if (!isEquivRecursive(pUntested, qUntested))
+								{
+									return false;
+								}
+							}
+						}
+					}
+					else
+					{
+						equiv.add(nextPair);
+						if (!isEquivRecursive(pNextClass, qNextClass))
+						{
+							return false;
+						}
 					}
 				}
-				outp.remove(pMove);
-				outq.remove(qMove);
-				P newPGuard = ba.MkAnd(pMove.guard, ba.MkNot(qMove.guard));
+				outp.remove(0);
+				outq.remove(qIndex);
+				P newPGuard = ba.MkAnd(pGuard, ba.MkNot(qGuard));
 				if (ba.IsSatisfiable(newPGuard))
 				{
-					outp.add(new SFAInputMove<P, S>(pMove.from, pMove.to, newPGuard));
+					outp.add(pTo, newPGuard);
 				}
-				P newQGuard = ba.MkAnd(qMove.guard, ba.MkNot(pMove.guard));
+				P newQGuard = ba.MkAnd(qGuard, ba.MkNot(pGuard));
 				if (ba.IsSatisfiable(newQGuard))
 				{
-					outq.add(new SFAInputMove<P, S>(qMove.from, qMove.to, newQGuard));
+					outq.add(qTo, newQGuard);
 				}
 			}
+			deps.setTested(pair);
 			path.remove(pair);
 			equiv.add(pair);
 			return true;
@@ -90,7 +155,9 @@ public class IncrementalRecWithDeps<P,S> extends IncrementalMinimization<P,S>
 			boolean finalResult = isEquivRecursive(pStart, qStart);
 			if(!finalResult)
 			{
-				int mergeResults = deps.mergeStates(equivClasses, path);
+				int mergeResults = sharedDependencies ? deps.mergeAndPrune(equivClasses, path, neq)
+						: deps.mergeStates(equivClasses, path);
+				stats.addUnions(mergeResults);
 				if(mergeResults > 0)
 				{
 					System.out.println(String.format("Recursive alg merged %d pairs", mergeResults));
@@ -100,16 +167,32 @@ public class IncrementalRecWithDeps<P,S> extends IncrementalMinimization<P,S>
 		}
 	}
 	
+	private final boolean sharedDependencies;
+
 	public IncrementalRecWithDeps(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
 	{
+		this(aut, ba, false);
+	}
+
+	public IncrementalRecWithDeps(SFA<P,S> aut, BooleanAlgebra<P,S> ba, boolean sharedDependencies)
+			throws TimeoutException
+	{
+		//see IncrWithDependencyChecks
 		super(aut,ba);
+		this.sharedDependencies = sharedDependencies;
 	}
 	
 	@Override
-	protected EquivTest makeEquivTest(DisjointSets<Integer> equivClasses)
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
 	{
-		HashSet<List<Integer>> equiv = new HashSet<List<Integer>>(num_pairs,0.9f);
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>(num_pairs,0.9f);
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
 		return new EquivTestRecursive(equivClasses, equiv, path);
 	}
+	
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrementalRecWithDeps<P,S>(editedAut, ba, sharedDependencies);
+	}
 }
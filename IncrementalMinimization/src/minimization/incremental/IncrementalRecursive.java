@@ -1,9 +1,6 @@
 package minimization.incremental;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -12,7 +9,8 @@ import minimization.incremental.IncrementalMinimization.EquivTest;
 import org.sat4j.specs.TimeoutException;
 
 import structures.DependencyGraph;
-import structures.DisjointSets;
+import structures.StatePairSet;
+import structures.UnionFind;
 import theory.BooleanAlgebra;
 import automata.sfa.SFA;
 import automata.sfa.SFAInputMove;
@@ -22,35 +20,44 @@ public class IncrementalRecursive<P,S> extends IncrementalMinimization<P,S>
 {
 	private class EquivTestRecursive extends EquivTest
 	{
-		public EquivTestRecursive(DisjointSets<Integer> equivClasses, HashSet<List<Integer>> equiv, 
-				HashSet<List<Integer>> path)
+		public EquivTestRecursive(UnionFind<Integer> equivClasses, StatePairSet equiv, 
+				StatePairSet path)
 		{
 			super(equivClasses, equiv, path);
 		}
 		
+		@Override
+		protected int currentDepth()
+		{
+			return path.size(); //the recursion keeps its path in the set only
+		}
+		
 		public boolean isEquivRecursive(Integer p, Integer q) throws TimeoutException
 		{
 			if (isKnownNotEqual(p,q))
 			{
 				return false;
 			}
-			List<Integer> pair = normalize(p,q);
+			long pair = normalize(p,q);
 			if (path.contains(pair))
 			{
 				return true;
 			}
 			path.add(pair);
-			Collection<SFAInputMove<P, S>> outp = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(p));
-			Collection<SFAInputMove<P, S>> outq = new ArrayList<SFAInputMove<P,S>>(aut.getInputMovesFrom(q));
+			budgetCheck();
+			MoveList outp = movesFrom(p);
+			MoveList outq = movesFrom(q);
 			while (!outp.isEmpty() && !outq.isEmpty())
 			{
-				List<SFAInputMove<P,S>> nonDisjointGuards = findNonDisjointMoves(outp,outq);
-				SFAInputMove<P,S> pMove = nonDisjointGuards.get(0);
-				SFAInputMove<P,S> qMove = nonDisjointGuards.get(1);
+				int qIndex = findNonDisjointMoves(outp,outq);
+				int pTo = outp.target(0);
+				P pGuard = outp.guard(0);
+				int qTo = outq.target(qIndex);
+				P qGuard = outq.guard(qIndex);
 				//note: we don't actually need to generate a witness, only need to know pMove,qMove are non-disjoint
-				Integer pNextClass = equivClasses.find(pMove.to);
-				Integer qNextClass = equivClasses.find(qMove.to);
-				List<Integer> nextPair = normalize(pNextClass, qNextClass);
+				Integer pNextClass = equivClasses.find(compiled.stateAt(pTo));
+				Integer qNextClass = equivClasses.find(compiled.stateAt(qTo));
+				long nextPair = normalize(pNextClass, qNextClass);
 				if ( !pNextClass.equals(qNextClass) && !equiv.contains(nextPair))
 				{
 					equiv.add(nextPair);
@@ -59,17 +66,17 @@ public class IncrementalRecursive<P,S> extends IncrementalMinimization<P,S>
 						return false;
 					}
 				}
-				outp.remove(pMove);
-				outq.remove(qMove);
-				P newPGuard = ba.MkAnd(pMove.guard, ba.MkNot(qMove.guard));
+				outp.remove(0);
+				outq.remove(qIndex);
+				P newPGuard = ba.MkAnd(pGuard, ba.MkNot(qGuard));
 				if (ba.IsSatisfiable(newPGuard))
 				{
-					outp.add(new SFAInputMove<P, S>(pMove.from, pMove.to, newPGuard));
+					outp.add(pTo, newPGuard);
 				}
-				P newQGuard = ba.MkAnd(qMove.guard, ba.MkNot(pMove.guard));
+				P newQGuard = ba.MkAnd(qGuard, ba.MkNot(pGuard));
 				if (ba.IsSatisfiable(newQGuard))
 				{
-					outq.add(new SFAInputMove<P, S>(qMove.from, qMove.to, newQGuard));
+					outq.add(qTo, newQGuard);
 				}
 			}
 			path.remove(pair);
@@ -91,10 +98,16 @@ public class IncrementalRecursive<P,S> extends IncrementalMinimization<P,S>
 	}
 	
 	@Override
-	protected EquivTest makeEquivTest(DisjointSets<Integer> equivClasses)
+	protected EquivTest makeEquivTest(UnionFind<Integer> equivClasses)
 	{
-		HashSet<List<Integer>> equiv = new HashSet<List<Integer>>(num_pairs,0.9f);
-		HashSet<List<Integer>> path = new HashSet<List<Integer>>(num_pairs,0.9f);
+		StatePairSet equiv = new StatePairSet();
+		StatePairSet path = new StatePairSet();
 		return new EquivTestRecursive(equivClasses, equiv, path);
 	}
+	
+	@Override
+	protected IncrementalMinimization<P,S> derive(SFA<P,S> editedAut) throws TimeoutException
+	{
+		return new IncrementalRecursive<P,S>(editedAut, ba);
+	}
 }
@@ -0,0 +1,10 @@
+package minimization.incremental;
+
+public interface ProgressListener
+{
+	/* Told the number of equivalence classes each time an equivalence test merges states, with the ns since
+	 * minimize was called. Called on the thread that ran the test, while the minimizer waits, so it should
+	 * only hand the numbers on. The parallel minimizer never calls it from two threads at once.
+	 */
+	public void progress(long elapsedTime, int classCount);
+}
@@ -0,0 +1,98 @@
+package minimization.incremental;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import structures.StatePairSet;
+import theory.BooleanAlgebra;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+
+public class SFADelta<P,S>
+{
+	//Edits to an automaton: moves added, moves removed and states whose finality changes. Moves are
+	//removed by their source and target, so removing a move and adding it back with another guard
+	//changes the guard of the move.
+	
+	private final Collection<SFAInputMove<P,S>> addedMoves;
+	private final StatePairSet removedMoves;
+	private final Set<Integer> newFinalStates;
+	private final Set<Integer> newNonFinalStates;
+	
+	public SFADelta()
+	{
+		this.addedMoves = new LinkedList<SFAInputMove<P,S>>();
+		this.removedMoves = new StatePairSet();
+		this.newFinalStates = new HashSet<Integer>();
+		this.newNonFinalStates = new HashSet<Integer>();
+	}
+	
+	public void addMove(Integer from, Integer to, P guard)
+	{
+		addedMoves.add(new SFAInputMove<P,S>(from, to, guard));
+	}
+	
+	public void removeMove(Integer from, Integer to)
+	{
+		removedMoves.add(StatePairSet.pack(from, to));
+	}
+	
+	public void makeFinal(Integer state)
+	{
+		newNonFinalStates.remove(state);
+		newFinalStates.add(state);
+	}
+	
+	public void makeNonFinal(Integer state)
+	{
+		newFinalStates.remove(state);
+		newNonFinalStates.add(state);
+	}
+	
+	public Set<Integer> getEditedStates()
+	{
+		//states whose own moves or finality change, only they and states reaching them change language
+		Set<Integer> edited = new HashSet<Integer>(newFinalStates);
+		edited.addAll(newNonFinalStates);
+		for (SFAInputMove<P,S> move : addedMoves)
+		{
+			edited.add(move.from);
+		}
+		for (long move : removedMoves.toArray())
+		{
+			edited.add(StatePairSet.first(move));
+		}
+		return edited;
+	}
+	
+	public boolean isEmpty()
+	{
+		return addedMoves.isEmpty() && removedMoves.isEmpty() && newFinalStates.isEmpty() 
+				&& newNonFinalStates.isEmpty();
+	}
+	
+	public SFA<P,S> applyTo(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		//state ids of aut are kept, states that become unreachable are dropped
+		Collection<SFAMove<P,S>> newTransitions = new LinkedList<SFAMove<P,S>>();
+		for (Integer state : aut.getStates())
+		{
+			for (SFAInputMove<P,S> move : aut.getInputMovesFrom(state))
+			{
+				if (!removedMoves.contains(StatePairSet.pack(move.from, move.to)))
+				{
+					newTransitions.add(move);
+				}
+			}
+		}
+		newTransitions.addAll(addedMoves);
+		Collection<Integer> finalStates = new HashSet<Integer>(aut.getFinalStates());
+		finalStates.removeAll(newNonFinalStates);
+		finalStates.addAll(newFinalStates);
+		return SFA.MkSFA(newTransitions, aut.getInitialState(), finalStates, ba);
+	}
+}
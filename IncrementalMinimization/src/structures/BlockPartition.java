@@ -0,0 +1,125 @@
+package structures;
+
+
+public class BlockPartition
+{
+	//Refinable partition of the elements 0..elementCount-1 into blocks, for partition refinement algorithms.
+	//Every block is a contiguous range of the elements array. Marking an element moves it to the front of its
+	//block, splitMarked then cuts the block in two at the end of the marked elements. Only the elements of the
+	//part that gets the new block id are relabeled, which is always the smaller part.
+
+	private final int[] elements;
+	private final int[] location; //index of each element in elements
+	private final int[] blockOf;
+	private final int[] start; //block ranges in elements, start inclusive and end exclusive
+	private final int[] end;
+	private final int[] marked; //number of marked elements at the front of each block
+	private int blockCount;
+
+	public BlockPartition(int elementCount)
+	{
+		elements = new int[elementCount];
+		location = new int[elementCount];
+		blockOf = new int[elementCount];
+		start = new int[Math.max(elementCount, 1)];
+		end = new int[start.length];
+		marked = new int[start.length];
+		for (int i = 0; i < elementCount; i++)
+		{
+			elements[i] = i;
+			location[i] = i;
+		}
+		start[0] = 0;
+		end[0] = elementCount;
+		blockCount = (elementCount == 0) ? 0 : 1;
+	}
+
+	public int blockCount()
+	{
+		return blockCount;
+	}
+
+	public int blockOf(int element)
+	{
+		return blockOf[element];
+	}
+
+	public int blockSize(int block)
+	{
+		return end[block] - start[block];
+	}
+
+	public int first(int block)
+	{
+		return elements[start[block]];
+	}
+
+	public int blockStart(int block)
+	{
+		return start[block];
+	}
+
+	public int blockEnd(int block)
+	{
+		return end[block];
+	}
+
+	public int elementAt(int position)
+	{
+		return elements[position];
+	}
+
+	public void mark(int element)
+	{
+		int block = blockOf[element];
+		int position = location[element];
+		int markedEnd = start[block] + marked[block];
+		if (position < markedEnd)
+		{
+			return; //already marked
+		}
+		int other = elements[markedEnd];
+		elements[markedEnd] = element;
+		location[element] = markedEnd;
+		elements[position] = other;
+		location[other] = position;
+		marked[block]++;
+	}
+
+	public int markedCount(int block)
+	{
+		return marked[block];
+	}
+
+	public int splitMarked(int block)
+	{
+		//Splits the marked elements from the rest of block and returns the id of the new block, which holds
+		//whichever part is smaller. Returns -1, leaving block as it is, if none or all elements were marked.
+		int markedCount = marked[block];
+		marked[block] = 0;
+		if (markedCount == 0 || markedCount == blockSize(block))
+		{
+			return -1;
+		}
+		int newBlock = blockCount++;
+		int cut = start[block] + markedCount;
+		if (markedCount <= blockSize(block) - markedCount)
+		{
+			start[newBlock] = start[block];
+			end[newBlock] = cut;
+			start[block] = cut;
+		}
+		else
+		{
+			start[newBlock] = cut;
+			end[newBlock] = end[block];
+			end[block] = cut;
+		}
+		marked[newBlock] = 0;
+		for (int i = start[newBlock]; i < end[newBlock]; i++)
+		{
+			blockOf[elements[i]] = newBlock;
+		}
+		return newBlock;
+	}
+}
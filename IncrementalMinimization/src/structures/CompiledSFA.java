@@ -0,0 +1,215 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+
+public class CompiledSFA<P,S>
+{
+	//Read-only snapshot of an SFA with its states renumbered densely as 0..n-1, in ascending order of the
+	//original state ids. Moves are stored in CSR layout: the moves leaving state i are the indices
+	//offsets[i] to offsets[i+1]-1 of targets and guards, in the order the SFA returned them. Incoming
+	//moves are stored the same way (inOffsets, sources, inMoves) for backwards traversals.
+
+	private static final int DIRECT_INDEX_FACTOR = 4; //array lookup used when ids are at most this sparse
+
+	private final Integer[] states; //dense index to original id, boxed once so lookups never allocate
+	private final int minId;
+	private final int[] directIndex; //original id - minId to dense index, -1 for non-states
+	private final HashMap<Integer, Integer> sparseIndex; //only used when ids are too sparse for directIndex
+
+	private final int[] offsets;
+	private final int[] targets;
+	private final P[] guards;
+
+	private final int[] inOffsets;
+	private final int[] sources;
+	private final int[] inMoves; //index of each incoming move in targets and guards
+
+	private final boolean[] isFinal;
+	private final int initialState;
+
+	@SuppressWarnings("unchecked")
+	public CompiledSFA(SFA<P,S> aut)
+	{
+		ArrayList<Integer> stateList = new ArrayList<Integer>(aut.getStates());
+		Collections.sort(stateList);
+		int n = stateList.size();
+		this.states = stateList.toArray(new Integer[n]);
+		if (n == 0)
+		{
+			this.minId = 0;
+			this.directIndex = new int[0];
+			this.sparseIndex = null;
+		}
+		else
+		{
+			this.minId = states[0];
+			long range = (long) states[n-1] - minId + 1;
+			if (range <= (long) DIRECT_INDEX_FACTOR * n + 16)
+			{
+				this.directIndex = new int[(int) range];
+				Arrays.fill(directIndex, -1);
+				for (int i = 0; i < n; i++)
+				{
+					directIndex[states[i] - minId] = i;
+				}
+				this.sparseIndex = null;
+			}
+			else
+			{
+				this.directIndex = null;
+				this.sparseIndex = new HashMap<Integer, Integer>(n*2);
+				for (int i = 0; i < n; i++)
+				{
+					sparseIndex.put(states[i], i);
+				}
+			}
+		}
+
+		this.offsets = new int[n+1];
+		ArrayList<SFAInputMove<P,S>> moves = new ArrayList<SFAInputMove<P,S>>();
+		for (int i = 0; i < n; i++)
+		{
+			offsets[i] = moves.size();
+			moves.addAll(aut.getInputMovesFrom(states[i]));
+		}
+		offsets[n] = moves.size();
+		int m = moves.size();
+		this.targets = new int[m];
+		this.guards = (P[]) new Object[m];
+		this.inOffsets = new int[n+1];
+		for (int i = 0; i < m; i++)
+		{
+			SFAInputMove<P,S> move = moves.get(i);
+			targets[i] = indexOf(move.to);
+			guards[i] = move.guard;
+			inOffsets[targets[i]+1]++;
+		}
+		for (int i = 0; i < n; i++)
+		{
+			inOffsets[i+1] += inOffsets[i];
+		}
+		this.sources = new int[m];
+		this.inMoves = new int[m];
+		int[] fill = Arrays.copyOf(inOffsets, n);
+		for (int s = 0; s < n; s++)
+		{
+			for (int i = offsets[s]; i < offsets[s+1]; i++)
+			{
+				int incoming = fill[targets[i]]++;
+				sources[incoming] = s;
+				inMoves[incoming] = i;
+			}
+		}
+
+		this.isFinal = new boolean[n];
+		for (Integer finalState : aut.getFinalStates())
+		{
+			isFinal[indexOf(finalState)] = true;
+		}
+		this.initialState = (n == 0) ? -1 : indexOf(aut.getInitialState());
+	}
+
+	public int stateCount()
+	{
+		return states.length;
+	}
+
+	public int moveCount()
+	{
+		return targets.length;
+	}
+
+	public boolean contains(Integer state)
+	{
+		if (directIndex != null)
+		{
+			int offset = state - minId;
+			return offset >= 0 && offset < directIndex.length && directIndex[offset] >= 0;
+		}
+		return sparseIndex.containsKey(state);
+	}
+
+	public int indexOf(Integer state)
+	{
+		if (directIndex != null)
+		{
+			int offset = state - minId;
+			if (offset >= 0 && offset < directIndex.length && directIndex[offset] >= 0)
+			{
+				return directIndex[offset];
+			}
+		}
+		else if (sparseIndex.containsKey(state))
+		{
+			return sparseIndex.get(state);
+		}
+		throw new IllegalArgumentException("State not found in automaton");
+	}
+
+	public Integer stateAt(int index)
+	{
+		return states[index];
+	}
+
+	public Collection<Integer> getStates()
+	{
+		return Arrays.asList(states);
+	}
+
+	public int movesStart(int state)
+	{
+		return offsets[state];
+	}
+
+	public int movesEnd(int state)
+	{
+		return offsets[state+1];
+	}
+
+	public int target(int move)
+	{
+		return targets[move];
+	}
+
+	public P guard(int move)
+	{
+		return guards[move];
+	}
+
+	public int incomingStart(int state)
+	{
+		return inOffsets[state];
+	}
+
+	public int incomingEnd(int state)
+	{
+		return inOffsets[state+1];
+	}
+
+	public int source(int incomingMove)
+	{
+		return sources[incomingMove];
+	}
+
+	public P incomingGuard(int incomingMove)
+	{
+		return guards[inMoves[incomingMove]];
+	}
+
+	public boolean isFinal(int state)
+	{
+		return isFinal[state];
+	}
+
+	public int getInitialState()
+	{
+		return initialState;
+	}
+}
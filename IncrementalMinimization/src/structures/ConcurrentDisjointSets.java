@@ -0,0 +1,83 @@
+package structures;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+public class ConcurrentDisjointSets <E> implements UnionFind<E>
+{
+	//DisjointSets that can be shared between threads without locking. The elements are fixed when it is
+	//created, so the index lookups are only ever read afterwards, and the sets live in a
+	//ConcurrentIntDisjointSets. getSets and toString are only consistent while no union is in progress.
+
+	private final HashMap<E, Integer> indexMap;
+	private final ArrayList<E> elements;
+	private final ConcurrentIntDisjointSets sets;
+
+	public ConcurrentDisjointSets(Collection<E> identifiers) throws IllegalArgumentException
+	{
+		indexMap = new HashMap<E, Integer>(identifiers.size()*2);
+		elements = new ArrayList<E>(identifiers);
+		for (int i = 0; i < elements.size(); i++)
+		{
+			if (indexMap.put(elements.get(i), i) != null)
+			{
+				throw new IllegalArgumentException("Identifier already exists in a set");
+			}
+		}
+		sets = new ConcurrentIntDisjointSets(elements.size());
+	}
+
+	@Override
+	public int indexOf(E element) throws IllegalArgumentException
+	{
+		Integer index = indexMap.get(element);
+		if (index == null)
+		{
+			throw new IllegalArgumentException("Element not found in any disjoint set");
+		}
+		return index;
+	}
+
+	@Override
+	public E find(E element) throws IllegalArgumentException
+	{
+		return elements.get(sets.find(indexOf(element)));
+	}
+
+	@Override
+	public E union(E elem1, E elem2)
+	{
+		return elements.get(sets.union(indexOf(elem1), indexOf(elem2)));
+	}
+
+	@Override
+	public HashMap<E, HashSet<E>> getSets()
+	{
+		HashMap<E, HashSet<E>> classes = new HashMap<E, HashSet<E>>(sets.size()*2);
+		for(int i = 0; i < elements.size(); i++)
+		{
+			E identifier = elements.get(sets.find(i));
+			HashSet<E> set = classes.get(identifier);
+			if(set == null)
+			{
+				set = new HashSet<E>();
+				classes.put(identifier, set);
+			}
+			set.add(elements.get(i));
+		}
+		return classes;
+	}
+
+	@Override
+	public int size()
+	{
+		return sets.size();
+	}
+
+	public String toString()
+	{
+		return getSets().toString();
+	}
+}
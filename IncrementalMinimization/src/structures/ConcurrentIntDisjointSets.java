@@ -0,0 +1,113 @@
+package structures;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+public class ConcurrentIntDisjointSets
+{
+	//Lock free union-find over the fixed elements 0..elementCount-1, after Jayanti and Tarjan.
+	//Roots are linked with a single CAS on the parent of the root being linked, which is always the root with
+	//the lower priority, so parents only ever move towards higher priority and no cycle can form. find uses
+	//path halving, each step tries one CAS that is allowed to fail when another thread already moved the node.
+	//Priorities are a fixed pseudo random order of the elements, which keeps trees shallow in expectation.
+
+	private final AtomicIntegerArray parent;
+	private final AtomicInteger size; //number of disjoint sets
+
+	public ConcurrentIntDisjointSets(int elementCount)
+	{
+		parent = new AtomicIntegerArray(elementCount);
+		for (int i = 0; i < elementCount; i++)
+		{
+			parent.set(i, i);
+		}
+		size = new AtomicInteger(elementCount);
+	}
+
+	private static int priority(int element)
+	{
+		int h = element * 0x9E3779B9; //fibonacci hashing, a bijection on ints
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean isLower(int elem1, int elem2)
+	{
+		int p1 = priority(elem1);
+		int p2 = priority(elem2);
+		return p1 < p2 || (p1 == p2 && elem1 < elem2);
+	}
+
+	public int find(int element) throws IllegalArgumentException
+	{
+		if (element < 0 || element >= parent.length())
+		{
+			throw new IllegalArgumentException("Element not found in any disjoint set");
+		}
+		while (true)
+		{
+			int next = parent.get(element);
+			if (next == element)
+			{
+				return element;
+			}
+			int grandparent = parent.get(next);
+			if (grandparent != next)
+			{
+				parent.compareAndSet(element, next, grandparent); //path halving
+			}
+			element = grandparent;
+		}
+	}
+
+	public int union(int elem1, int elem2)
+	{
+		while (true)
+		{
+			int iden1 = find(elem1);
+			int iden2 = find(elem2);
+			if (iden1 == iden2)
+			{
+				return iden1;
+			}
+			if (isLower(iden1, iden2))
+			{
+				int swap = iden1;
+				iden1 = iden2;
+				iden2 = swap;
+			}
+			//iden2 has the lower priority and is linked below iden1, retried if it stopped being a root
+			if (parent.compareAndSet(iden2, iden2, iden1))
+			{
+				size.decrementAndGet();
+				return iden1;
+			}
+		}
+	}
+
+	public boolean sameSet(int elem1, int elem2)
+	{
+		while (true)
+		{
+			int iden1 = find(elem1);
+			int iden2 = find(elem2);
+			if (iden1 == iden2)
+			{
+				return true;
+			}
+			if (parent.get(iden1) == iden1) //iden1 still a root, so the sets were different at some point
+			{
+				return false;
+			}
+		}
+	}
+
+	public int elementCount()
+	{
+		return parent.length();
+	}
+
+	public int size()
+	{
+		return size.get();
+	}
+}
@@ -0,0 +1,192 @@
+package structures;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentStatePairSet
+{
+	//Insert only counterpart of StatePairSet for sharing knowledge between threads. Pairs are packed the same
+	//way (StatePairSet.pack) and spread over STRIPES tables by the top bits of their hash, each placed by
+	//linear probing. Adding locks the pair's stripe only, which grows on its own like a StatePairSet. Searching
+	//takes no lock: a stripe's table is only replaced by a full copy of it, so a search that read the old
+	//table sees every pair added before the copy was published.
+
+	private static final long EMPTY = 0L;
+	private static final int STRIPE_BITS = 6;
+	private static final int STRIPES = 1 << STRIPE_BITS;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private static class Stripe
+	{
+		private volatile AtomicLongArray table;
+		private int size;
+
+		public Stripe(int capacity)
+		{
+			this.table = new AtomicLongArray(capacity);
+			this.size = 0;
+		}
+	}
+
+	private final Stripe[] stripes;
+	private final AtomicInteger size;
+	private volatile boolean hasEmptyPair;
+
+	public ConcurrentStatePairSet(int expectedSize)
+	{
+		long needed = Math.max((long) expectedSize, 1) * 2 / STRIPES; //load factor of at most 0.5
+		int capacity = MIN_CAPACITY;
+		while (capacity < needed)
+		{
+			capacity <<= 1;
+		}
+		this.stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+		{
+			stripes[i] = new Stripe(capacity);
+		}
+		this.size = new AtomicInteger(0);
+		this.hasEmptyPair = false;
+	}
+
+	public ConcurrentStatePairSet()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	private static long hash(long pair)
+	{
+		return pair * 0x9E3779B97F4A7C15L; //fibonacci hashing
+	}
+
+	private static int slot(long hash, int capacity)
+	{
+		//the bits below the stripe bits
+		return (int) ((hash << STRIPE_BITS) >>> (64 - Integer.numberOfTrailingZeros(capacity)));
+	}
+
+	private static boolean insert(AtomicLongArray table, long pair)
+	{
+		int mask = table.length() - 1;
+		int i = slot(hash(pair), table.length());
+		while (true)
+		{
+			long current = table.get(i);
+			if (current == pair)
+			{
+				return false;
+			}
+			if (current == EMPTY)
+			{
+				table.set(i, pair);
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	private static void grow(Stripe stripe) throws IllegalStateException
+	{
+		AtomicLongArray table = stripe.table;
+		if (table.length() == MAX_CAPACITY)
+		{
+			throw new IllegalStateException("Pair set is full");
+		}
+		AtomicLongArray grown = new AtomicLongArray(table.length() << 1);
+		for (int i = 0; i < table.length(); i++)
+		{
+			long pair = table.get(i);
+			if (pair != EMPTY)
+			{
+				insert(grown, pair);
+			}
+		}
+		stripe.table = grown;
+	}
+
+	public boolean add(long pair) throws IllegalStateException
+	{
+		if (pair == EMPTY)
+		{
+			synchronized (this)
+			{
+				if (hasEmptyPair)
+				{
+					return false;
+				}
+				hasEmptyPair = true;
+			}
+			size.incrementAndGet();
+			return true;
+		}
+		Stripe stripe = stripes[(int) (hash(pair) >>> (64 - STRIPE_BITS))];
+		synchronized (stripe)
+		{
+			if ((stripe.size + 1) * 2L > stripe.table.length())
+			{
+				grow(stripe);
+			}
+			if (!insert(stripe.table, pair))
+			{
+				return false;
+			}
+			stripe.size++;
+		}
+		size.incrementAndGet();
+		return true;
+	}
+
+	public boolean add(int p, int q)
+	{
+		return add(StatePairSet.pack(p,q));
+	}
+
+	public void addAll(StatePairSet pairs)
+	{
+		for (long pair : pairs.toArray())
+		{
+			add(pair);
+		}
+	}
+
+	public boolean contains(long pair)
+	{
+		if (pair == EMPTY)
+		{
+			return hasEmptyPair;
+		}
+		long hash = hash(pair);
+		AtomicLongArray table = stripes[(int) (hash >>> (64 - STRIPE_BITS))].table;
+		int mask = table.length() - 1;
+		int i = slot(hash, table.length());
+		while (true)
+		{
+			long current = table.get(i);
+			if (current == pair)
+			{
+				return true;
+			}
+			if (current == EMPTY)
+			{
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	public boolean contains(int p, int q)
+	{
+		return contains(StatePairSet.pack(p,q));
+	}
+
+	public int size()
+	{
+		return size.get();
+	}
+
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+}
@@ -1,186 +1,564 @@
 package structures;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
+import java.util.Arrays;
 
 import org.sat4j.specs.TimeoutException;
 
-public class DependencyGraph 
+public class DependencyGraph
 {
-	protected class StatePair //Nodes in graph
+	//Graph of the state pairs seen by equivalence tests, with an edge from a pair to every pair it depends on.
+	//Each pair is given an int node id when first seen, nodes and edges live in flat arrays and every edge is
+	//linked into both the out list of its source and the in list of its target, so dependencies can be walked
+	//forwards and dependents backwards. Pairs are looked up by an open addressing table (linear probing) from
+	//packed pair to id + 1, and clearing only resets the slots of the current nodes.
+	//A graph kept across tests drops settled pairs lazily: they are marked dead and left out of the table,
+	//and the arrays are compacted once most nodes are dead.
+
+	private static final int MIN_CAPACITY = 16;
+	private static final int NONE = -1;
+	private static final int TOMBSTONE = -1; //slot of a dead node, probing goes on past it
+	private static final byte OUTSIDE = 0; //marks of merge, nodes that are not part of the current call
+	private static final byte VALID = 1;
+	private static final byte BAD = 2; //depends on a bad pair
+	private static final byte PENDING = 3; //depends on an untested pair, but on no bad pair
+	private static final byte MERGED = 4; //merged before the call
+
+	private long[] pairs; //node id -> pair
+	private boolean[] tested; //pairs whose own dependencies have been added
+	private boolean[] dead;
+	private int[] stamp; //epoch in which the node was last touched
+	private int[] slotOf; //node id -> slot in lookup
+	private int[] outHead; //first edge leaving the node
+	private int[] inHead; //first edge entering the node
+	private int nodeCount;
+	private int liveCount;
+
+	private int[] edgeFrom;
+	private int[] edgeTo;
+	private int[] nextOut;
+	private int[] nextIn;
+	private int edgeCount;
+
+	private int[] lookup; //node id + 1, 0 for an empty slot
+	private int lookupMask;
+	private int lookupShift;
+	private int lookupUsed; //filled slots, tombstones included
+
+	private int[] touched; //nodes added, tested or given dependencies since the last merge
+	private int touchedCount;
+	private int epoch;
+
+	private byte[] marks; //scratch space of merge, all OUTSIDE between calls
+	private int[] region; //nodes marked by the current merge
+	private int regionSize;
+	private boolean[] seen; //scratch space of collectClosure, all false between calls
+	private int[] queue;
+
+	public DependencyGraph()
+	{
+		pairs = new long[MIN_CAPACITY];
+		tested = new boolean[MIN_CAPACITY];
+		dead = new boolean[MIN_CAPACITY];
+		stamp = new int[MIN_CAPACITY];
+		slotOf = new int[MIN_CAPACITY];
+		outHead = new int[MIN_CAPACITY];
+		inHead = new int[MIN_CAPACITY];
+		nodeCount = 0;
+		liveCount = 0;
+		edgeFrom = new int[MIN_CAPACITY];
+		edgeTo = new int[MIN_CAPACITY];
+		nextOut = new int[MIN_CAPACITY];
+		nextIn = new int[MIN_CAPACITY];
+		edgeCount = 0;
+		allocateLookup(2*MIN_CAPACITY);
+		touched = new int[MIN_CAPACITY];
+		touchedCount = 0;
+		epoch = 1;
+		marks = new byte[MIN_CAPACITY];
+		region = new int[MIN_CAPACITY];
+		regionSize = 0;
+		seen = new boolean[MIN_CAPACITY];
+		queue = new int[MIN_CAPACITY];
+	}
+
+	private void allocateLookup(int capacity)
 	{
-		public final List<Integer> pair;
-		private boolean isTested;
-		private LinkedList<StatePair> deps; //successor nodes, i.e. pairs that this pair is dependent on
+		lookup = new int[capacity];
+		lookupMask = capacity - 1;
+		lookupShift = 64 - Integer.numberOfTrailingZeros(capacity);
+		lookupUsed = 0;
+	}
 
-		public StatePair(List<Integer> pair, boolean isTested)
+	private int slot(long pair)
+	{
+		return (int) ((pair * 0x9E3779B97F4A7C15L) >>> lookupShift); //fibonacci hashing
+	}
+
+	public void clear()
+	{
+		for (int id = 0; id < nodeCount; id++)
 		{
-			this.pair = pair;
-			this.isTested = isTested;
-			this.deps = new LinkedList<StatePair>();
+			lookup[slotOf[id]] = 0;
 		}
+		nodeCount = 0;
+		liveCount = 0;
+		edgeCount = 0;
+		lookupUsed = 0;
+		touchedCount = 0;
+		epoch++;
+	}
 
-		public StatePair(List<Integer> pair)
+	public int size()
+	{
+		return liveCount;
+	}
+
+	private int find(long pair)
+	{
+		//node id of pair, NONE if it is not in the graph
+		int i = slot(pair);
+		while (lookup[i] != 0)
 		{
-			this(pair, true);
+			if (lookup[i] != TOMBSTONE && pairs[lookup[i]-1] == pair)
+			{
+				return lookup[i]-1;
+			}
+			i = (i + 1) & lookupMask;
 		}
+		return NONE;
+	}
 
-		public void addDependency(StatePair dep)
+	private int node(long pair)
+	{
+		//node id of pair, added untested if it is not in the graph yet
+		int found = find(pair);
+		if (found != NONE)
 		{
-			assert(dep != null);
-			deps.add(dep);
+			return found;
 		}
-
-		public LinkedList<StatePair> getDependencies()
+		if (nodeCount == pairs.length)
 		{
-			return deps;
+			int capacity = pairs.length << 1;
+			pairs = Arrays.copyOf(pairs, capacity);
+			tested = Arrays.copyOf(tested, capacity);
+			dead = Arrays.copyOf(dead, capacity);
+			stamp = Arrays.copyOf(stamp, capacity);
+			slotOf = Arrays.copyOf(slotOf, capacity);
+			outHead = Arrays.copyOf(outHead, capacity);
+			inHead = Arrays.copyOf(inHead, capacity);
 		}
-
-		public boolean isTested()
+		int id = nodeCount++;
+		liveCount++;
+		pairs[id] = pair;
+		tested[id] = false;
+		dead[id] = false;
+		outHead[id] = NONE;
+		inHead[id] = NONE;
+		int i = slot(pair);
+		while (lookup[i] != 0)
 		{
-			return isTested;
+			i = (i + 1) & lookupMask;
 		}
-
-		public void setTested(boolean b)
+		lookup[i] = id+1;
+		slotOf[id] = i;
+		lookupUsed++;
+		if (2*lookupUsed > lookup.length)
 		{
-			isTested = b;
+			int capacity = lookup.length;
+			while (4*liveCount > capacity)
+			{
+				capacity <<= 1;
+			}
+			rehash(capacity);
 		}
+		touch(id);
+		return id;
+	}
 
-		@Override
-		public boolean equals(Object other)
+	private void rehash(int capacity)
+	{
+		//fills a fresh table with the live nodes, which also drops the tombstones
+		allocateLookup(capacity);
+		for (int id = 0; id < nodeCount; id++)
 		{
-			if(other == null || (other.getClass() != getClass()))
+			if (dead[id])
 			{
-				return false;
+				continue;
 			}
-			StatePair otherPair = (StatePair) other;
-			if(pair.equals((otherPair.pair)))
+			int i = slot(pairs[id]);
+			while (lookup[i] != 0)
 			{
-				assert(deps.equals(otherPair.getDependencies()));
-				return true;
+				i = (i + 1) & lookupMask;
 			}
-			else
+			lookup[i] = id+1;
+			slotOf[id] = i;
+			lookupUsed++;
+		}
+	}
+
+	private void touch(int id)
+	{
+		if (stamp[id] != epoch)
+		{
+			stamp[id] = epoch;
+			if (touchedCount == touched.length)
 			{
-				return false;
+				touched = Arrays.copyOf(touched, touched.length << 1);
 			}
+			touched[touchedCount++] = id;
 		}
+	}
+
+	public boolean contains(long pair)
+	{
+		return find(pair) != NONE;
+	}
+
+	public boolean isTested(long pair)
+	{
+		int id = find(pair);
+		return id != NONE && tested[id];
+	}
+
+	public void addDependency(long pair, long dependency)
+	{
+		if(pair == dependency)
+		{
+			return;
+		}
+		int from = node(pair);
+		tested[from] = true;
+		touch(from);
+		int to = node(dependency);
+		link(from, to);
+	}
 
-		@Override
-		public int hashCode()
+	private void link(int from, int to)
+	{
+		if (edgeCount == edgeFrom.length)
 		{
-			return pair.hashCode();
+			int capacity = edgeFrom.length << 1;
+			edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+			edgeTo = Arrays.copyOf(edgeTo, capacity);
+			nextOut = Arrays.copyOf(nextOut, capacity);
+			nextIn = Arrays.copyOf(nextIn, capacity);
 		}
+		int edge = edgeCount++;
+		edgeFrom[edge] = from;
+		edgeTo[edge] = to;
+		nextOut[edge] = outHead[from];
+		outHead[from] = edge;
+		nextIn[edge] = inHead[to];
+		inHead[to] = edge;
+	}
+
+	public void setTested(long pair)
+	{
+		//pair has all of its dependencies, which may be none
+		int id = node(pair);
+		tested[id] = true;
+		touch(id);
+	}
 
-		@Override
-		public String toString()
+	public void addAllDependencies(long pair, long[] dpairs)
+	{
+		for(long dpair : dpairs)
 		{
-			return String.format("%s | %s ", pair.toString(), Boolean.toString(isTested));
+			addDependency(pair, dpair);
 		}
+	}
 
-		public String toStringLong()
+	private void ensureScratch()
+	{
+		if (queue.length < nodeCount)
 		{
-			return String.format("%s | %s | %s", pair.toString(), Boolean.toString(isTested), deps.toString());
+			marks = new byte[pairs.length];
+			region = new int[pairs.length];
+			seen = new boolean[pairs.length];
+			queue = new int[pairs.length];
 		}
 	}
 
+	public boolean collectClosure(long pair, UnionFind<Integer> equivClasses, StatePairSet skip,
+			StatePairSet testedPairs, StatePairSet untestedPairs)
+	{
+		/* Walks the dependencies of a tested pair, e.g. one left waiting by an earlier test, without passing
+		 * through merged pairs or pairs in skip. The tested pairs reached (pair included) are added to
+		 * testedPairs and the untested ones, where the walk stops, to untestedPairs. Returns false and adds
+		 * nothing if pair is not a tested pair of the graph.
+		 */
+		int start = find(pair);
+		if (start == NONE || !tested[start])
+		{
+			return false;
+		}
+		ensureScratch();
+		seen[start] = true;
+		queue[0] = start;
+		int head = 0;
+		int tail = 1;
+		while (head < tail)
+		{
+			int id = queue[head++];
+			if (!tested[id])
+			{
+				untestedPairs.add(pairs[id]);
+				continue;
+			}
+			testedPairs.add(pairs[id]);
+			for (int edge = outHead[id]; edge != NONE; edge = nextOut[edge])
+			{
+				int dependency = edgeTo[edge];
+				if (!seen[dependency] && !dead[dependency] && !skip.contains(pairs[dependency])
+						&& !isMerged(pairs[dependency], equivClasses))
+				{
+					seen[dependency] = true;
+					queue[tail++] = dependency;
+				}
+			}
+		}
+		for (int i = 0; i < tail; i++)
+		{
+			seen[queue[i]] = false;
+		}
+		return true;
+	}
 
-	private HashMap<List<Integer>,StatePair> pairLookup;
+	private boolean isMerged(long pair, UnionFind<Integer> equivClasses)
+	{
+		return equivClasses.find(StatePairSet.first(pair)).equals(equivClasses.find(StatePairSet.second(pair)));
+	}
 
-	public DependencyGraph()
+	private boolean isBad(long pair, StatePairSet badPath, StatePairSet neq)
 	{
-		this.pairLookup = new HashMap<List<Integer>,StatePair>();
+		return badPath.contains(pair) || (neq != null && neq.contains(pair));
 	}
 
-	public void addDependency(List<Integer> pair, List<Integer> dependency)
+	private void enter(int id, UnionFind<Integer> equivClasses)
 	{
-		if(pair.equals(dependency))
+		//adds a live node to the region unless it is in already
+		if (dead[id] || marks[id] != OUTSIDE)
 		{
 			return;
 		}
-		StatePair pairEntry;
-		if(pairLookup.containsKey(pair))
+		marks[id] = isMerged(pairs[id], equivClasses) ? MERGED : VALID;
+		region[regionSize++] = id;
+	}
+
+	private void invalidate(byte mark, int tail)
+	{
+		//marks every VALID pair that reaches one of the first tail pairs of queue through VALID pairs
+		int head = 0;
+		while (head < tail)
 		{
-			pairEntry = pairLookup.get(pair);
-			pairEntry.setTested(true);
+			int id = queue[head++];
+			for (int edge = inHead[id]; edge != NONE; edge = nextIn[edge])
+			{
+				int dependent = edgeFrom[edge];
+				if (marks[dependent] == VALID)
+				{
+					marks[dependent] = mark;
+					queue[tail++] = dependent;
+				}
+			}
+		}
+	}
+
+	private int merge(UnionFind<Integer> equivClasses, StatePairSet badPath, StatePairSet neq,
+			boolean wholeGraph)
+	{
+		/* A pair can be merged unless it reaches an untested or bad pair through pairs that are not merged yet.
+		 * Those pairs are found backwards, first from the bad pairs and then from the untested ones, so a
+		 * pair is only marked PENDING if no bad pair is in its way. Everything left over is closed under its
+		 * dependencies and is merged.
+		 * Unless wholeGraph is set, only the region of pairs touched since the last call, the pairs of badPath
+		 * and the pairs depending on them is looked at. Any other pair was PENDING after the last call and
+		 * none of its dependencies changed, so it still waits for an untested pair. Each node and edge of the
+		 * region is visited a bounded number of times. The region stays marked until endMerge.
+		 */
+		ensureScratch();
+		regionSize = 0;
+		if (wholeGraph)
+		{
+			for (int id = 0; id < nodeCount; id++)
+			{
+				enter(id, equivClasses);
+			}
 		}
 		else
 		{
-			pairEntry = new StatePair(pair, true);
-			pairLookup.put(pair, pairEntry);
+			for (int i = 0; i < touchedCount; i++)
+			{
+				enter(touched[i], equivClasses);
+			}
+			for (long badPair : badPath.toArray())
+			{
+				int id = find(badPair);
+				if (id != NONE)
+				{
+					enter(id, equivClasses);
+				}
+			}
+			for (int i = 0; i < regionSize; i++) //regionSize grows as dependents are entered
+			{
+				if (marks[region[i]] == VALID) //a merged pair never holds up its dependents
+				{
+					for (int edge = inHead[region[i]]; edge != NONE; edge = nextIn[edge])
+					{
+						enter(edgeFrom[edge], equivClasses);
+					}
+				}
+			}
 		}
-		StatePair depEntry;
-		if(pairLookup.containsKey(dependency))
+		int tail = 0;
+		for (int i = 0; i < regionSize; i++)
 		{
-			depEntry = pairLookup.get(dependency);
+			int id = region[i];
+			if (marks[id] == VALID && isBad(pairs[id], badPath, neq))
+			{
+				marks[id] = BAD;
+				queue[tail++] = id;
+			}
 		}
-		else
+		invalidate(BAD, tail);
+		tail = 0;
+		for (int i = 0; i < regionSize; i++)
 		{
-			depEntry = new StatePair(dependency, false);
-			pairLookup.put(dependency, depEntry);
+			int id = region[i];
+			if (marks[id] == VALID && isWaiting(id, equivClasses))
+			{
+				marks[id] = PENDING;
+				queue[tail++] = id;
+			}
 		}
-		assert(depEntry != null);
-		pairEntry.addDependency(depEntry);
+		invalidate(PENDING, tail);
+		int result = 0;
+		for (int i = 0; i < regionSize; i++)
+		{
+			int id = region[i];
+			if (marks[id] == VALID && !isMerged(pairs[id], equivClasses))
+			{
+				equivClasses.union(StatePairSet.first(pairs[id]), StatePairSet.second(pairs[id]));
+				result++;
+			}
+		}
+		return result;
 	}
 
-	public void addAllDependencies(List<Integer> pair, ArrayList<List<Integer>> dpairs)
+	private boolean isWaiting(int id, UnionFind<Integer> equivClasses)
 	{
-		for(List<Integer> dpair : dpairs)
+		//untested, or depends on an unmerged pair outside the region, which is PENDING
+		if (!tested[id])
 		{
-			addDependency(pair, dpair);
+			return true;
 		}
-	}
-	
-	private int mergePair(StatePair pairEntry, DisjointSets<Integer> equivClasses, 
-			HashSet<List<Integer>> badPairs) throws TimeoutException
-	{
-		
-		Queue<StatePair> depQueue = new LinkedList<StatePair>();
-		depQueue.addAll(pairEntry.getDependencies());
-		HashSet<StatePair> seenPairs = new HashSet<StatePair>();
-		while(!depQueue.isEmpty())
+		for (int edge = outHead[id]; edge != NONE; edge = nextOut[edge])
 		{
-			StatePair dep = depQueue.remove();
-			if(seenPairs.contains(dep) ||
-					equivClasses.find(dep.pair.get(0)) == equivClasses.find(dep.pair.get(1)))
+			int dependency = edgeTo[edge];
+			if (!dead[dependency] && marks[dependency] == OUTSIDE && !isMerged(pairs[dependency], equivClasses))
 			{
-				continue;
+				return true;
 			}
-			seenPairs.add(dep);
-			if(!dep.isTested() || badPairs.contains(dep.pair))
+		}
+		return false;
+	}
+
+	private void endMerge()
+	{
+		for (int i = 0; i < regionSize; i++)
+		{
+			marks[region[i]] = OUTSIDE;
+		}
+		regionSize = 0;
+		touchedCount = 0;
+		epoch++;
+	}
+
+	public int mergeStates(UnionFind<Integer> equivClasses, StatePairSet badPath) throws TimeoutException
+	{
+		//Merges every pair that does not depend on an untested pair or a pair of badPath, returns the number of
+		//pairs that were not merged before.
+		int result = merge(equivClasses, badPath, null, true);
+		endMerge();
+		return result;
+	}
+
+	public int mergeAndPrune(UnionFind<Integer> equivClasses, StatePairSet badPath, StatePairSet neq)
+			throws TimeoutException
+	{
+		/* For a graph kept across tests: pairs in neq are bad as well, and only the region changed since the
+		 * last call is looked at. After merging, the graph only keeps the pairs that are still PENDING, i.e.
+		 * that wait for an untested pair. Merged pairs have nothing left to settle and pairs that depend on a
+		 * bad pair never will, so later calls no longer visit either.
+		 */
+		int result = merge(equivClasses, badPath, neq, false);
+		for (int i = 0; i < regionSize; i++)
+		{
+			int id = region[i];
+			if (marks[id] != PENDING || isMerged(pairs[id], equivClasses))
 			{
-				return 0;
+				dead[id] = true;
+				lookup[slotOf[id]] = TOMBSTONE;
+				liveCount--;
 			}
-			depQueue.addAll(dep.getDependencies());
 		}
-		for(StatePair mergePair : seenPairs)
+		endMerge();
+		if (nodeCount > MIN_CAPACITY && 2*liveCount < nodeCount)
 		{
-			equivClasses.union(mergePair.pair.get(0), mergePair.pair.get(1));
+			compact();
 		}
-		return seenPairs.size();
+		return result;
 	}
-	
-	public int mergeStates(DisjointSets<Integer> equivClasses, HashSet<List<Integer>> badPath) throws TimeoutException
+
+	private void compact()
 	{
-		int result = 0;
-		for(StatePair pairEntry : pairLookup.values())
+		//renumbers the live nodes from 0 and drops the dead ones along with their edges
+		int[] newId = new int[nodeCount];
+		int kept = 0;
+		for (int id = 0; id < nodeCount; id++)
+		{
+			newId[id] = dead[id] ? NONE : kept++;
+		}
+		int[] oldFrom = new int[edgeCount];
+		int[] oldTo = new int[edgeCount];
+		int oldEdges = 0;
+		for (int id = 0; id < nodeCount; id++)
 		{
-			if(!pairEntry.isTested)
+			if (newId[id] == NONE)
 			{
 				continue;
 			}
-			else if(badPath.contains(pairEntry.pair))
+			for (int edge = inHead[id]; edge != NONE; edge = nextIn[edge])
 			{
-				continue;
+				if (newId[edgeFrom[edge]] != NONE)
+				{
+					oldFrom[oldEdges] = newId[edgeFrom[edge]];
+					oldTo[oldEdges] = newId[id];
+					oldEdges++;
+				}
 			}
-			else
+		}
+		for (int id = 0; id < nodeCount; id++)
+		{
+			if (newId[id] != NONE)
 			{
-				result += mergePair(pairEntry,equivClasses,badPath);
+				pairs[newId[id]] = pairs[id];
+				tested[newId[id]] = tested[id];
+				stamp[newId[id]] = stamp[id];
+				dead[newId[id]] = false;
 			}
 		}
-		return result;
+		nodeCount = kept;
+		rehash(lookup.length);
+		edgeCount = 0;
+		for (int id = 0; id < nodeCount; id++)
+		{
+			outHead[id] = NONE;
+			inHead[id] = NONE;
+		}
+		for (int edge = oldEdges-1; edge >= 0; edge--) //keeps the order of each in list
+		{
+			link(oldFrom[edge], oldTo[edge]);
+		}
 	}
 }
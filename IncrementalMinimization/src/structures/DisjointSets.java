@@ -5,159 +5,102 @@ import java.util.HashMap;
 import java.util.HashSet;
 
 
-public class DisjointSets <E>
+public class DisjointSets <E> implements UnionFind<E>
 {
-	//TODO: rewrite or find an implementation using "rooted trees" for optimization
-	
 	//implementation inspired from https://ocw.mit.edu/courses/electrical-engineering-and-computer-science/6-046j-design-and-analysis-of-algorithms-spring-2012/lecture-notes/MIT6_046JS12_lec16.pdf
-	//parentMap contains a forest of implicit trees with the identifiers of the sets at the root, every element in parentMap is mapped to its parent in its tree
-	
+	//Adapter over IntDisjointSets: each element is given an int index when made, the rooted trees themselves
+	//(parents, ranks and path compression) live in the int arrays of sets.
+
+
+	private HashMap<E, Integer> indexMap;
+	private ArrayList<E> elements; //maps indices back to elements
+	private IntDisjointSets sets;
 
-	private HashMap<E, E> parentMap;
-	private HashMap<E, Integer> rankMap;
-	private int size;
-	
 	public DisjointSets()
 	{
-		parentMap = new HashMap<E, E>();
-		rankMap = new HashMap<E, Integer>();
-		size = 0;
+		indexMap = new HashMap<E, Integer>();
+		elements = new ArrayList<E>();
+		sets = new IntDisjointSets();
 	}
-	
+
 	public DisjointSets(Collection<E> identifiers)
 	{
-		parentMap = new HashMap<E, E>();
-		rankMap = new HashMap<E, Integer>();
-		size=0;
+		indexMap = new HashMap<E, Integer>(identifiers.size()*2);
+		elements = new ArrayList<E>(identifiers.size());
+		sets = new IntDisjointSets(identifiers.size());
 		for(E identifier : identifiers)
 		{
 			make(identifier);
-			size++;
 		}
 	}
-	
+
 	public DisjointSets(DisjointSets<E> disjointSets)
 	{
-		parentMap = new HashMap<E,E>();
-		rankMap = new HashMap<E, Integer>();
-		size=0;
-		HashMap<E, HashSet<E>> sets = disjointSets.getSets();
-		for (E iden : sets.keySet())
-		{
-			make(iden);
-			HashSet<E> set = sets.get(iden);
-			for (E elem : set)
-			{
-				if (elem != iden)
-				{
-					make(elem);
-				}
-				union(elem, iden);
-			}
-		}
+		indexMap = new HashMap<E, Integer>(disjointSets.indexMap);
+		elements = new ArrayList<E>(disjointSets.elements);
+		sets = new IntDisjointSets(disjointSets.sets);
 	}
-	
+
 	public void make(E identifier) throws IllegalArgumentException
 	{
-		if(!parentMap.containsKey(identifier))
+		if(!indexMap.containsKey(identifier))
 		{
-			parentMap.put(identifier, null);
-			rankMap.put(identifier, 1);
-			size++;
+			indexMap.put(identifier, sets.make());
+			elements.add(identifier);
 		}
 		else
 		{
 			throw new IllegalArgumentException("Identifier already exists in a set");
 		}
 	}
-	
-	public E find(E element) throws IllegalArgumentException
+
+	public int indexOf(E element) throws IllegalArgumentException
 	{
-		if (!parentMap.containsKey(element))
+		Integer index = indexMap.get(element);
+		if (index == null)
 		{
 			throw new IllegalArgumentException("Element not found in any disjoint set");
 		}
-		ArrayList<E> path = new ArrayList<E>(53); //height of tree will not exceed 53 with less than 1024 TB of available memory
-		while(parentMap.get(element) != null)
-		{
-			path.add(element);
-			element = parentMap.get(element);
-			
-		}
-		for(E pathMember : path) //path is compressed
-		{
-			if (pathMember != element)
-			{
-				parentMap.put(pathMember, element);
-			}
-		}
-		return element;
+		return index;
+	}
+
+	public E find(E element) throws IllegalArgumentException
+	{
+		return elements.get(sets.find(indexOf(element)));
 	}
-	
+
 	public E union(E elem1, E elem2)
 	{
-		E iden1 = find(elem1);
-		E iden2 = find(elem2);
-		E union_iden;
-		if(iden1.equals(iden2))
-		{
-			union_iden = iden1;
-		}
-		else
-		{
-			int rank1 = rankMap.get(iden1);
-			int rank2 = rankMap.get(iden2);
-			if (rank1 == rank2)
-			{
-				parentMap.put(iden2, iden1);
-				rankMap.put(iden1, rank1+1);
-				union_iden = iden1;
-			}
-			else if (rank1 > rank2)
-			{
-				parentMap.put(iden2, iden1);
-				union_iden = iden1;
-			}
-			else
-			{
-				parentMap.put(iden1, iden2);
-				union_iden = iden2;
-			}
-		}
-		size--;
-		return union_iden;
+		return elements.get(sets.union(indexOf(elem1), indexOf(elem2)));
 	}
-	
+
 	public HashMap<E, HashSet<E>> getSets()
 	{
-		HashMap<E, HashSet<E>> sets = new HashMap<E, HashSet<E>>();
-		for(E element : parentMap.keySet())
+		HashMap<E, HashSet<E>> classes = new HashMap<E, HashSet<E>>(sets.size()*2);
+		for(int i = 0; i < elements.size(); i++)
 		{
-			E identifier = find(element);
-			if(!sets.containsKey(identifier))
-			{
-				HashSet<E> set = new HashSet<E>();
-				set.add(element);
-				sets.put(identifier, set);
-			}
-			else
+			E identifier = elements.get(sets.find(i));
+			HashSet<E> set = classes.get(identifier);
+			if(set == null)
 			{
-				sets.get(identifier).add(element);
+				set = new HashSet<E>();
+				classes.put(identifier, set);
 			}
+			set.add(elements.get(i));
 		}
-		return sets;
+		return classes;
 	}
-	
+
 	public int size()
 	{
-		return size;
+		return sets.size();
 	}
-	
+
 	public String toString()
 	{
 		return getSets().toString();
 	}
-	
-	
-	
+
+
+
 }
@@ -0,0 +1,112 @@
+package structures;
+import java.util.Arrays;
+
+
+public class IntDisjointSets
+{
+	//Array based union-find over the elements 0..elementCount-1, using union by rank and path compression.
+	//parent[i] == i marks i as the identifier (root) of its set. Neither find nor union allocate.
+
+	private int[] parent;
+	private int[] rank;
+	private int elementCount;
+	private int size; //number of disjoint sets
+
+	public IntDisjointSets(int capacity)
+	{
+		parent = new int[Math.max(capacity, 1)];
+		rank = new int[parent.length];
+		elementCount = 0;
+		size = 0;
+	}
+
+	public IntDisjointSets()
+	{
+		this(16);
+	}
+
+	public IntDisjointSets(IntDisjointSets disjointSets)
+	{
+		parent = Arrays.copyOf(disjointSets.parent, disjointSets.parent.length);
+		rank = Arrays.copyOf(disjointSets.rank, disjointSets.rank.length);
+		elementCount = disjointSets.elementCount;
+		size = disjointSets.size;
+	}
+
+	public int make()
+	{
+		if (elementCount == parent.length)
+		{
+			parent = Arrays.copyOf(parent, elementCount*2);
+			rank = Arrays.copyOf(rank, elementCount*2);
+		}
+		int element = elementCount;
+		parent[element] = element;
+		rank[element] = 1;
+		elementCount++;
+		size++;
+		return element;
+	}
+
+	public int find(int element) throws IllegalArgumentException
+	{
+		if (element < 0 || element >= elementCount)
+		{
+			throw new IllegalArgumentException("Element not found in any disjoint set");
+		}
+		int root = element;
+		while (parent[root] != root)
+		{
+			root = parent[root];
+		}
+		while (parent[element] != root) //path is compressed
+		{
+			int next = parent[element];
+			parent[element] = root;
+			element = next;
+		}
+		return root;
+	}
+
+	public int union(int elem1, int elem2)
+	{
+		int iden1 = find(elem1);
+		int iden2 = find(elem2);
+		if (iden1 == iden2)
+		{
+			return iden1;
+		}
+		size--;
+		if (rank[iden1] == rank[iden2])
+		{
+			parent[iden2] = iden1;
+			rank[iden1]++;
+			return iden1;
+		}
+		else if (rank[iden1] > rank[iden2])
+		{
+			parent[iden2] = iden1;
+			return iden1;
+		}
+		else
+		{
+			parent[iden1] = iden2;
+			return iden2;
+		}
+	}
+
+	public boolean sameSet(int elem1, int elem2)
+	{
+		return find(elem1) == find(elem2);
+	}
+
+	public int elementCount()
+	{
+		return elementCount;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+}
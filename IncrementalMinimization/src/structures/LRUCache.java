@@ -0,0 +1,24 @@
+package structures;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public class LRUCache<K,V> extends LinkedHashMap<K,V>
+{
+	//Map that drops its least recently accessed entry once it holds more than capacity entries
+	
+	private static final long serialVersionUID = 1L;
+	private final int capacity;
+
+	public LRUCache(int capacity)
+	{
+		super(16, 0.75f, true);
+		this.capacity = capacity;
+	}
+
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K,V> eldest)
+	{
+		return size() > capacity;
+	}
+}
@@ -1,5 +1,13 @@
 package structures;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -10,18 +18,139 @@ import theory.BooleanAlgebra;
 
 public class MintermTree<P,S>
 {
+	/* Binary tree whose leaves are the minterms of the guards it was refined with. Every node predicate is
+	 * satisfiable, so refining by a guard only has to descend into nodes that overlap both the guard and its
+	 * negation. A node inside the guard or disjoint from it is skipped with its whole subtree. Refinement
+	 * and traversal use explicit stacks, so deep trees do not overflow the call stack.
+	 * Subtrees are refined independently of each other, so the parallel generator hands a leaf that splits
+	 * on one guard and both of its halves go on with the remaining guards as fork-join tasks. Below
+	 * PARALLEL_THRESHOLD remaining guards a task refines its subtree sequentially.
+	 */
+
+	public static final int PARALLEL_THRESHOLD = 16;
+
+	private static class TimeoutWrapper extends RuntimeException //carries a TimeoutException out of a task
+	{
+		private static final long serialVersionUID = 1L;
+
+		public TimeoutWrapper(TimeoutException cause)
+		{
+			super(cause);
+		}
+	}
+
+	private static class RefineTask<P,S> extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final MintermTree<P,S> leaf;
+		private final List<P> guards;
+		private final List<P> notGuards;
+		private final int from;
+
+		public RefineTask(MintermTree<P,S> leaf, List<P> guards, List<P> notGuards, int from)
+		{
+			this.leaf = leaf;
+			this.guards = guards;
+			this.notGuards = notGuards;
+			this.from = from;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try
+			{
+				leaf.refineLeaf(guards, notGuards, from);
+			}
+			catch (TimeoutException e)
+			{
+				throw new TimeoutWrapper(e);
+			}
+		}
+	}
+
 	public static <P,S> ArrayList<P> generate_minterms(SFA<P,S> aut, BooleanAlgebra<P,S> ba) throws TimeoutException
-	{	
+	{
+		ArrayList<P> guards = new ArrayList<P>();
+		for(SFAInputMove<P,S> p : aut.getInputMovesFrom(aut.getStates()))
+		{
+			guards.add(p.guard);
+		}
+		return generate_minterms(guards, ba);
+	}
+
+	public static <P,S> ArrayList<P> generate_local_minterms(SFA<P,S> aut, Integer p, Integer q,
+			BooleanAlgebra<P,S> ba) throws TimeoutException
+	{
+		//minterms of the guards leaving p and q only, all an equivalence test of the pair needs
+		ArrayList<P> guards = new ArrayList<P>();
+		for (SFAInputMove<P,S> move : aut.getInputMovesFrom(p))
+		{
+			guards.add(move.guard);
+		}
+		for (SFAInputMove<P,S> move : aut.getInputMovesFrom(q))
+		{
+			guards.add(move.guard);
+		}
+		return generate_minterms(guards, ba);
+	}
+
+	public static <P,S> ArrayList<P> generate_minterms(Collection<P> guards, BooleanAlgebra<P,S> ba)
+			throws TimeoutException
+	{
 		MintermTree<P,S> tree = new MintermTree<P,S>(ba, ba.True());
+		HashSet<P> refined = new HashSet<P>(); //many moves share a guard, refining by it again changes nothing
+		for (P guard : guards)
+		{
+			if (refined.add(guard))
+			{
+				tree.refine(guard);
+			}
+		}
+		return tree.getMinterms();
+	}
+
+	public static <P,S> ArrayList<P> generate_minterms_parallel(SFA<P,S> aut, BooleanAlgebra<P,S> ba,
+			ForkJoinPool pool) throws TimeoutException
+	{
+		ArrayList<P> guards = new ArrayList<P>();
 		for(SFAInputMove<P,S> p : aut.getInputMovesFrom(aut.getStates()))
 		{
-			tree.refine(p.guard);
+			guards.add(p.guard);
+		}
+		return generate_minterms_parallel(guards, ba, pool);
+	}
+
+	public static <P,S> ArrayList<P> generate_minterms_parallel(Collection<P> guards, BooleanAlgebra<P,S> ba,
+			ForkJoinPool pool) throws TimeoutException
+	{
+		//Same minterms in the same order as generate_minterms. ba is called from several threads at once.
+		//The tasks run in the caller's pool, ForkJoinPool.commonPool() unless the caller keeps its own.
+		ArrayList<P> distinctGuards = new ArrayList<P>(new LinkedHashSet<P>(guards));
+		if (pool.getParallelism() <= 1 || distinctGuards.size() < PARALLEL_THRESHOLD)
+		{
+			return generate_minterms(distinctGuards, ba);
+		}
+		ArrayList<P> notGuards = new ArrayList<P>(distinctGuards.size());
+		for (P guard : distinctGuards)
+		{
+			notGuards.add(ba.MkNot(guard));
+		}
+		MintermTree<P,S> tree = new MintermTree<P,S>(ba, ba.True());
+		try
+		{
+			pool.invoke(new RefineTask<P,S>(tree, distinctGuards, notGuards, 0));
+		}
+		catch (TimeoutWrapper e)
+		{
+			throw (TimeoutException) e.getCause();
 		}
 		return tree.getMinterms();
 	}
-	
+
 	private final BooleanAlgebra<P,S> ba;
-			
+
 	private P root_pred;
 	private MintermTree<P,S> left;
 	private MintermTree<P,S> right;
@@ -33,43 +162,102 @@ public class MintermTree<P,S>
 		left = null;
 		right = null;
 	}
-			
+
 	public boolean isLeaf()
 	{
 		return (left == null); //no single children are ever added, so this is a sufficient check
 	}
-			
+
 	public void refine(P pred) throws TimeoutException
 	{
-		P predAnd = ba.MkAnd(root_pred, pred);
-		P predAndNot = ba.MkAnd(root_pred, ba.MkNot(pred));
-		if (ba.IsSatisfiable(predAnd) && ba.IsSatisfiable(predAndNot))
+		refine(pred, ba.MkNot(pred));
+	}
+
+	private void refine(P pred, P notPred) throws TimeoutException
+	{
+		//notPred is shared by every node
+		ArrayDeque<MintermTree<P,S>> nodes = new ArrayDeque<MintermTree<P,S>>();
+		nodes.push(this);
+		while (!nodes.isEmpty())
+		{
+			MintermTree<P,S> node = nodes.pop();
+			P predAnd = ba.MkAnd(node.root_pred, pred);
+			if (!ba.IsSatisfiable(predAnd))
+			{
+				continue; //disjoint from pred
+			}
+			P predAndNot = ba.MkAnd(node.root_pred, notPred);
+			if (!ba.IsSatisfiable(predAndNot))
+			{
+				continue; //inside pred
+			}
+			if (node.isLeaf())
+			{
+				node.left = new MintermTree<P,S>(ba, predAnd);
+				node.right = new MintermTree<P,S>(ba, predAndNot);
+			}
+			else
+			{
+				nodes.push(node.right);
+				nodes.push(node.left);
+			}
+		}
+	}
+
+	private void refineLeaf(List<P> guards, List<P> notGuards, int from) throws TimeoutException
+	{
+		//Refines this leaf by guards from index from on. Once it splits, its halves take the remaining guards,
+		//as parallel tasks if there are enough of them.
+		for (int i = from; i < guards.size(); i++)
 		{
-			if (isLeaf())
+			P predAnd = ba.MkAnd(root_pred, guards.get(i));
+			if (!ba.IsSatisfiable(predAnd))
+			{
+				continue;
+			}
+			P predAndNot = ba.MkAnd(root_pred, notGuards.get(i));
+			if (!ba.IsSatisfiable(predAndNot))
+			{
+				continue;
+			}
+			left = new MintermTree<P,S>(ba, predAnd);
+			right = new MintermTree<P,S>(ba, predAndNot);
+			if (guards.size() - (i+1) >= PARALLEL_THRESHOLD)
 			{
-				this.left = new MintermTree<P,S>(ba, predAnd);
-				this.right = new MintermTree<P,S>(ba, predAndNot);
+				ForkJoinTask.invokeAll(new RefineTask<P,S>(left, guards, notGuards, i+1),
+						new RefineTask<P,S>(right, guards, notGuards, i+1));
 			}
 			else
 			{
-				left.refine(pred);
-				right.refine(pred);
+				for (int j = i+1; j < guards.size(); j++)
+				{
+					left.refine(guards.get(j), notGuards.get(j));
+					right.refine(guards.get(j), notGuards.get(j));
+				}
 			}
+			return;
 		}
 	}
-	
+
 	public ArrayList<P> getMinterms()
 	{
+		//leaves from left to right
 		ArrayList<P> minterms = new ArrayList<P>();
-		if (isLeaf())
-		{
-			minterms.add(root_pred);
-		}
-		else
+		ArrayDeque<MintermTree<P,S>> nodes = new ArrayDeque<MintermTree<P,S>>();
+		nodes.push(this);
+		while (!nodes.isEmpty())
 		{
-			minterms.addAll(left.getMinterms());
-			minterms.addAll(right.getMinterms());
+			MintermTree<P,S> node = nodes.pop();
+			if (node.isLeaf())
+			{
+				minterms.add(node.root_pred);
+			}
+			else
+			{
+				nodes.push(node.right);
+				nodes.push(node.left);
+			}
 		}
 		return minterms;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,327 @@
+package structures;
+
+import java.util.Arrays;
+
+public class StatePairSet
+{
+	//Open addressing set (linear probing) of state pairs. A pair (p,q) is packed into a single long, p in the
+	//high 32 bits and q in the low 32 bits, so adding or searching for a pair never boxes or hashes a List.
+	//Pairs are stored exactly as given, normalizing the order of p and q is left to the caller.
+	//Slots filled since the last clear are remembered (up to a quarter of the table), so clearing a large,
+	//sparsely used set only resets the slots that were touched and the set can be reused as scratch space.
+
+	private static final long EMPTY = 0L; //packed (0,0), tracked separately so new tables need no filling
+	private static final float LOAD_FACTOR = 0.5f;
+	private static final int MIN_CAPACITY = 16;
+
+	public static long pack(int p, int q)
+	{
+		return (((long) p) << 32) | (q & 0xFFFFFFFFL);
+	}
+
+	public static int first(long pair)
+	{
+		return (int) (pair >>> 32);
+	}
+
+	public static int second(long pair)
+	{
+		return (int) pair;
+	}
+
+	public static String toString(long pair)
+	{
+		return String.format("[%d, %d]", first(pair), second(pair));
+	}
+
+	private long[] table;
+	private int mask;
+	private int shift;
+	private int size;
+	private int resizeAt;
+	private boolean hasEmptyPair;
+	private int[] touched; //slots filled since the last clear, null once too many to be worth tracking
+	private int touchedCount;
+	private boolean removedSinceClear; //touched may then list emptied or repeated slots
+
+	public StatePairSet(int expectedSize)
+	{
+		allocate(tableSizeFor(expectedSize));
+		touched = new int[MIN_CAPACITY];
+		touchedCount = 0;
+		removedSinceClear = false;
+	}
+
+	public StatePairSet()
+	{
+		this(MIN_CAPACITY);
+	}
+
+	public StatePairSet(StatePairSet pairs)
+	{
+		this(pairs.size());
+		addAll(pairs);
+	}
+
+	private static int tableSizeFor(int expectedSize)
+	{
+		long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+		int capacity = MIN_CAPACITY;
+		while (capacity < needed && capacity < (1 << 30))
+		{
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity)
+	{
+		table = new long[capacity];
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		resizeAt = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private void touch(int slot)
+	{
+		if (touched == null)
+		{
+			return;
+		}
+		if (touchedCount == touched.length)
+		{
+			if (touchedCount >= (table.length >> 2))
+			{
+				touched = null; //clearing the whole table is about as cheap from here on
+				return;
+			}
+			touched = Arrays.copyOf(touched, touchedCount*2);
+		}
+		touched[touchedCount++] = slot;
+	}
+
+	private int slot(long pair)
+	{
+		return (int) ((pair * 0x9E3779B97F4A7C15L) >>> shift); //fibonacci hashing
+	}
+
+	public boolean add(long pair)
+	{
+		if (pair == EMPTY)
+		{
+			if (hasEmptyPair)
+			{
+				return false;
+			}
+			hasEmptyPair = true;
+			size++;
+			return true;
+		}
+		int i = slot(pair);
+		while (table[i] != EMPTY)
+		{
+			if (table[i] == pair)
+			{
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = pair;
+		touch(i);
+		size++;
+		if (size > resizeAt)
+		{
+			rehash(table.length << 1);
+		}
+		return true;
+	}
+
+	public boolean add(int p, int q)
+	{
+		return add(pack(p,q));
+	}
+
+	private boolean touchedIsExact()
+	{
+		//true if touched lists exactly the occupied slots, so they can be visited without scanning the table
+		return touched != null && !removedSinceClear;
+	}
+
+	public void addAll(StatePairSet pairs)
+	{
+		if (pairs.hasEmptyPair)
+		{
+			add(EMPTY);
+		}
+		if (pairs.touchedIsExact())
+		{
+			for (int i = 0; i < pairs.touchedCount; i++)
+			{
+				add(pairs.table[pairs.touched[i]]);
+			}
+			return;
+		}
+		for (long pair : pairs.table)
+		{
+			if (pair != EMPTY)
+			{
+				add(pair);
+			}
+		}
+	}
+
+	public boolean contains(long pair)
+	{
+		if (pair == EMPTY)
+		{
+			return hasEmptyPair;
+		}
+		int i = slot(pair);
+		while (table[i] != EMPTY)
+		{
+			if (table[i] == pair)
+			{
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public boolean contains(int p, int q)
+	{
+		return contains(pack(p,q));
+	}
+
+	public boolean remove(long pair)
+	{
+		if (pair == EMPTY)
+		{
+			if (!hasEmptyPair)
+			{
+				return false;
+			}
+			hasEmptyPair = false;
+			size--;
+			return true;
+		}
+		int i = slot(pair);
+		while (table[i] != pair)
+		{
+			if (table[i] == EMPTY)
+			{
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		//backward shift deletion, keeps every probe sequence unbroken without tombstones
+		removedSinceClear = true;
+		int gap = i;
+		int j = (i + 1) & mask;
+		while (table[j] != EMPTY)
+		{
+			int home = slot(table[j]);
+			if (((j - home) & mask) >= ((j - gap) & mask))
+			{
+				table[gap] = table[j];
+				gap = j;
+			}
+			j = (j + 1) & mask;
+		}
+		table[gap] = EMPTY;
+		size--;
+		return true;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] oldTable = table;
+		allocate(capacity);
+		touchedCount = 0;
+		removedSinceClear = false;
+		for (long pair : oldTable)
+		{
+			if (pair != EMPTY)
+			{
+				int i = slot(pair);
+				while (table[i] != EMPTY)
+				{
+					i = (i + 1) & mask;
+				}
+				table[i] = pair;
+				touch(i);
+			}
+		}
+	}
+
+	public void clear()
+	{
+		//slots emptied by remove may still be listed in touched, resetting them again is harmless
+		if (touched != null)
+		{
+			for (int i = 0; i < touchedCount; i++)
+			{
+				table[touched[i]] = EMPTY;
+			}
+		}
+		else
+		{
+			Arrays.fill(table, EMPTY);
+			touched = new int[MIN_CAPACITY];
+		}
+		touchedCount = 0;
+		removedSinceClear = false;
+		hasEmptyPair = false;
+		size = 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public long[] toArray()
+	{
+		long[] pairs = new long[size];
+		int index = 0;
+		if (hasEmptyPair)
+		{
+			pairs[index++] = EMPTY;
+		}
+		if (touchedIsExact())
+		{
+			for (int i = 0; i < touchedCount; i++)
+			{
+				pairs[index++] = table[touched[i]];
+			}
+			return pairs;
+		}
+		for (long pair : table)
+		{
+			if (pair != EMPTY)
+			{
+				pairs[index++] = pair;
+			}
+		}
+		return pairs;
+	}
+
+	public String toString()
+	{
+		StringBuilder str = new StringBuilder("[");
+		for (long pair : toArray())
+		{
+			if (str.length() > 1)
+			{
+				str.append(", ");
+			}
+			str.append(toString(pair));
+		}
+		return str.append("]").toString();
+	}
+}
@@ -0,0 +1,97 @@
+package structures;
+
+import java.util.Arrays;
+
+public class StatePairStack
+{
+	//Path of state pairs from the start of a depth first equivalence test to the pair currently being tested.
+	//Frames only remember their depth, popping back to a frame is done with truncate. Membership is answered
+	//by a StatePairSet of everything on the stack, so push, pop and contains are all O(1). A pair pushed
+	//while it is already on the stack is marked as repeated, popping it then keeps the earlier occurrence.
+
+	private long[] pairs;
+	private boolean[] repeated;
+	private int depth;
+	private final StatePairSet members;
+
+	public StatePairStack(int capacity)
+	{
+		this.pairs = new long[Math.max(capacity, 1)];
+		this.repeated = new boolean[pairs.length];
+		this.depth = 0;
+		this.members = new StatePairSet(capacity);
+	}
+
+	public StatePairStack()
+	{
+		this(16);
+	}
+
+	public void push(long pair)
+	{
+		if (depth == pairs.length)
+		{
+			pairs = Arrays.copyOf(pairs, depth*2);
+			repeated = Arrays.copyOf(repeated, depth*2);
+		}
+		pairs[depth] = pair;
+		repeated[depth] = !members.add(pair);
+		depth++;
+	}
+
+	public long pop()
+	{
+		depth--;
+		if (!repeated[depth])
+		{
+			members.remove(pairs[depth]);
+		}
+		return pairs[depth];
+	}
+
+	public void truncate(int newDepth)
+	{
+		while (depth > newDepth)
+		{
+			pop();
+		}
+	}
+
+	public long peek()
+	{
+		return pairs[depth-1];
+	}
+
+	public int depth()
+	{
+		return depth;
+	}
+
+	public boolean contains(long pair)
+	{
+		return members.contains(pair);
+	}
+
+	public boolean containsBelowTop(long pair)
+	{
+		//true if pair is on the stack other than as the topmost entry
+		if (depth > 0 && pairs[depth-1] == pair)
+		{
+			return repeated[depth-1];
+		}
+		return members.contains(pair);
+	}
+
+	public void addAllTo(StatePairSet set)
+	{
+		for (int i = 0; i < depth; i++)
+		{
+			set.add(pairs[i]);
+		}
+	}
+
+	public void clear()
+	{
+		truncate(0);
+	}
+}
@@ -0,0 +1,70 @@
+package structures;
+
+import java.util.Arrays;
+
+public class TimeSeries
+{
+	//Append only series of (time, value) samples in two primitive arrays. Adding a sample allocates nothing
+	//until the capacity given up front is used up, after which the arrays are doubled.
+
+	private long[] times;
+	private int[] values;
+	private int size;
+
+	public TimeSeries(int capacity)
+	{
+		this.times = new long[Math.max(capacity, 1)];
+		this.values = new int[times.length];
+		this.size = 0;
+	}
+
+	public TimeSeries()
+	{
+		this(16);
+	}
+
+	public void add(long time, int value)
+	{
+		if (size == times.length)
+		{
+			times = Arrays.copyOf(times, size*2);
+			values = Arrays.copyOf(values, size*2);
+		}
+		times[size] = time;
+		values[size] = value;
+		size++;
+	}
+
+	public long time(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("No sample " + index);
+		}
+		return times[index];
+	}
+
+	public int value(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("No sample " + index);
+		}
+		return values[index];
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		size = 0;
+	}
+}
@@ -0,0 +1,151 @@
+package structures;
+
+import java.util.Arrays;
+
+public class TriangularBitMatrix
+{
+	//One bit for each unordered pair {i,j} of 0..n-1 with i != j. Row j holds the pairs with i < j and starts
+	//at bit j*(j-1)/2, so the rows are packed back to back in a long[] of n*(n-1)/128 words. Pairs can also
+	//be addressed by that flat bit index, which is how set bits are scanned.
+
+	private final int n;
+	private final long[] words;
+
+	public TriangularBitMatrix(int n)
+	{
+		this.n = n;
+		this.words = new long[(int) ((index(0, Math.max(n, 1)) + 63) >>> 6)];
+	}
+
+	public TriangularBitMatrix(TriangularBitMatrix matrix)
+	{
+		this.n = matrix.n;
+		this.words = Arrays.copyOf(matrix.words, matrix.words.length);
+	}
+
+	public static long index(int i, int j)
+	{
+		//flat bit index of the pair, in either order
+		if (i > j)
+		{
+			int swap = i;
+			i = j;
+			j = swap;
+		}
+		return (long) j*(j-1)/2 + i;
+	}
+
+	public static int row(long index)
+	{
+		//larger element of the pair at index
+		int j = (int) ((1 + Math.sqrt(1 + 8.0*index))/2);
+		while (index(0, j) > index) //corrects rounding of the square root
+		{
+			j--;
+		}
+		while (index(0, j+1) <= index)
+		{
+			j++;
+		}
+		return j;
+	}
+
+	private void checkPair(int i, int j)
+	{
+		if (i == j || i < 0 || j < 0 || i >= n || j >= n)
+		{
+			throw new IllegalArgumentException("No pair " + i + "," + j);
+		}
+	}
+
+	public boolean get(int i, int j)
+	{
+		checkPair(i, j);
+		long bit = index(i, j);
+		return (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+	}
+
+	public boolean set(int i, int j)
+	{
+		//returns true if the pair was not set before
+		checkPair(i, j);
+		return setIndex(index(i, j));
+	}
+
+	public boolean setIndex(long bit)
+	{
+		int word = (int) (bit >>> 6);
+		long mask = 1L << bit;
+		if ((words[word] & mask) != 0)
+		{
+			return false;
+		}
+		words[word] |= mask;
+		return true;
+	}
+
+	public void clearIndex(long bit)
+	{
+		words[(int) (bit >>> 6)] &= ~(1L << bit);
+	}
+
+	public long nextSetIndex(long from)
+	{
+		//smallest set index >= from, -1 if there is none
+		int word = (int) (from >>> 6);
+		if (word >= words.length)
+		{
+			return -1;
+		}
+		long bits = words[word] & (-1L << from);
+		while (bits == 0)
+		{
+			word++;
+			if (word == words.length)
+			{
+				return -1;
+			}
+			bits = words[word];
+		}
+		return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	private long bitsAt(long bit)
+	{
+		//the 64 bits starting at bit, bits past the end are 0
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		long low = (word < words.length) ? words[word] >>> shift : 0;
+		if (shift == 0 || word+1 >= words.length)
+		{
+			return low;
+		}
+		return low | (words[word+1] << (64 - shift));
+	}
+
+	public int firstUnsetInRow(int j, long[] columns)
+	{
+		//Smallest i < j whose bit is set in columns and whose pair with j is not set, -1 if there is none.
+		//Compares 64 pairs of the row at a time.
+		long rowStart = index(0, j);
+		for (int word = 0; word << 6 < j && word < columns.length; word++)
+		{
+			long candidates = columns[word] & ~bitsAt(rowStart + (word << 6));
+			int remaining = j - (word << 6);
+			if (remaining < 64)
+			{
+				candidates &= (1L << remaining) - 1;
+			}
+			if (candidates != 0)
+			{
+				return (word << 6) + Long.numberOfTrailingZeros(candidates);
+			}
+		}
+		return -1;
+	}
+
+	public int size()
+	{
+		return n;
+	}
+}
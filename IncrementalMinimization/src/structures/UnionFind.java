@@ -0,0 +1,20 @@
+package structures;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+public interface UnionFind <E>
+{
+	//Equivalence classes as the minimization algorithms use them once they are set up. DisjointSets grows
+	//one element at a time, ConcurrentDisjointSets is fixed when created and can be shared between threads.
+
+	public int indexOf(E element) throws IllegalArgumentException;
+
+	public E find(E element) throws IllegalArgumentException;
+
+	public E union(E elem1, E elem2);
+
+	public HashMap<E, HashSet<E>> getSets();
+
+	public int size();
+}
@@ -0,0 +1,65 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.BlockPartition;
+
+public class TestBlockPartition {
+
+	BlockPartition partition;
+
+	@Test
+	public void testSplit()
+	{
+		partition = new BlockPartition(10);
+		Assert.assertEquals(1, partition.blockCount());
+		for (int i = 0; i < 10; i += 3)
+		{
+			partition.mark(i);
+		}
+		partition.mark(3); //marking twice has no effect
+		Assert.assertEquals(4, partition.markedCount(0));
+		int newBlock = partition.splitMarked(0);
+		Assert.assertEquals(1, newBlock);
+		Assert.assertEquals(2, partition.blockCount());
+		Assert.assertEquals(4, partition.blockSize(newBlock)); //marked part is the smaller one
+		Assert.assertEquals(6, partition.blockSize(0));
+		for (int i = 0; i < 10; i++)
+		{
+			Assert.assertEquals(i % 3 == 0 ? newBlock : 0, partition.blockOf(i));
+		}
+	}
+
+	@Test
+	public void testSmallerPart()
+	{
+		partition = new BlockPartition(10);
+		for (int i = 0; i < 8; i++)
+		{
+			partition.mark(i);
+		}
+		int newBlock = partition.splitMarked(0);
+		Assert.assertEquals(2, partition.blockSize(newBlock)); //unmarked part is the smaller one
+		Assert.assertEquals(newBlock, partition.blockOf(9));
+		Assert.assertEquals(0, partition.blockOf(0));
+		for (int i = partition.blockStart(0); i < partition.blockEnd(0); i++)
+		{
+			Assert.assertTrue(partition.elementAt(i) < 8);
+		}
+	}
+
+	@Test
+	public void testNoSplit()
+	{
+		partition = new BlockPartition(5);
+		Assert.assertEquals(-1, partition.splitMarked(0));
+		for (int i = 0; i < 5; i++)
+		{
+			partition.mark(i);
+		}
+		Assert.assertEquals(-1, partition.splitMarked(0));
+		Assert.assertEquals(1, partition.blockCount());
+		Assert.assertEquals(0, partition.markedCount(0));
+	}
+
+}
@@ -0,0 +1,73 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.ConcurrentIntDisjointSets;
+
+public class TestConcurrentIntDisjointSets {
+
+	ConcurrentIntDisjointSets sets;
+
+	@Test
+	public void testUnion()
+	{
+		sets = new ConcurrentIntDisjointSets(10);
+		for (int i = 0; i < 10; i++)
+		{
+			Assert.assertEquals(i, sets.find(i));
+		}
+		int root = sets.union(1, 2);
+		Assert.assertEquals(root, sets.find(1));
+		Assert.assertEquals(root, sets.find(2));
+		sets.union(4, 5);
+		sets.union(2, 4);
+		Assert.assertTrue(sets.sameSet(1, 5));
+		Assert.assertFalse(sets.sameSet(1, 7));
+		Assert.assertEquals(7, sets.size());
+		sets.union(5, 1);
+		Assert.assertEquals(7, sets.size());
+	}
+
+	@Test
+	public void testConcurrentUnion() throws InterruptedException
+	{
+		//threads union overlapping chains, all elements with the same parity must end up in one set
+		final int elementCount = 10000;
+		sets = new ConcurrentIntDisjointSets(elementCount);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t;
+			threads[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					for (int i = offset; i + 2 < elementCount; i++)
+					{
+						sets.union(i, i + 2);
+						sets.find(elementCount - 1 - i);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		Assert.assertEquals(2, sets.size());
+		for (int i = 0; i < elementCount; i++)
+		{
+			Assert.assertTrue(sets.sameSet(i, i % 2));
+		}
+		Assert.assertFalse(sets.sameSet(0, 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissing()
+	{
+		sets = new ConcurrentIntDisjointSets(10);
+		sets.find(10);
+	}
+
+}
@@ -0,0 +1,69 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.ConcurrentStatePairSet;
+import structures.StatePairSet;
+
+public class TestConcurrentStatePairSet {
+
+	ConcurrentStatePairSet pairs;
+
+	@Test
+	public void testGrow()
+	{
+		pairs = new ConcurrentStatePairSet(1); //far more pairs than expected
+		for (int p = 0; p < 200; p++)
+		{
+			for (int q = p; q < 200; q++)
+			{
+				Assert.assertTrue(pairs.add(p, q));
+			}
+		}
+		Assert.assertFalse(pairs.add(3, 5));
+		Assert.assertEquals(200*201/2, pairs.size());
+		for (int p = 0; p < 200; p++)
+		{
+			Assert.assertTrue(pairs.contains(p, p));
+			Assert.assertTrue(pairs.contains(0, p));
+			Assert.assertFalse(pairs.contains(p+1, p));
+		}
+		Assert.assertTrue(pairs.contains(StatePairSet.pack(0, 0)));
+	}
+
+	@Test
+	public void testConcurrentAdd() throws InterruptedException
+	{
+		//threads add overlapping ranges while searching for pairs the others add
+		final int pairCount = 100000;
+		pairs = new ConcurrentStatePairSet();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t * pairCount / 8;
+			threads[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					for (int i = offset; i < offset + pairCount / 2; i++)
+					{
+						pairs.add(i, i + 1);
+						pairs.contains(pairCount - i, pairCount - i + 1);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		int last = (threads.length - 1) * pairCount / 8 + pairCount / 2;
+		Assert.assertEquals(last, pairs.size());
+		for (int i = 0; i < last; i++)
+		{
+			Assert.assertTrue(pairs.contains(i, i + 1));
+		}
+		Assert.assertFalse(pairs.contains(last, last + 1));
+	}
+}
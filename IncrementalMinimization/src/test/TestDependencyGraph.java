@@ -0,0 +1,110 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import structures.DependencyGraph;
+import structures.DisjointSets;
+import structures.StatePairSet;
+
+public class TestDependencyGraph {
+
+	private DisjointSets<Integer> states(int n)
+	{
+		DisjointSets<Integer> sets = new DisjointSets<Integer>();
+		for (int i = 0; i < n; i++)
+		{
+			sets.make(i);
+		}
+		return sets;
+	}
+
+	@Test
+	public void testMergeClosed() throws TimeoutException
+	{
+		//[0,1] and [2,3] only depend on each other, [4,5] depends on the bad pair [6,7]
+		DependencyGraph deps = new DependencyGraph();
+		long a = StatePairSet.pack(0, 1);
+		long b = StatePairSet.pack(2, 3);
+		long c = StatePairSet.pack(4, 5);
+		long bad = StatePairSet.pack(6, 7);
+		deps.addAllDependencies(a, new long[] {b});
+		deps.addDependency(b, a);
+		deps.addAllDependencies(c, new long[] {a, bad});
+		deps.addDependency(bad, c);
+		StatePairSet badPath = new StatePairSet();
+		badPath.add(bad);
+		DisjointSets<Integer> equivClasses = states(8);
+		Assert.assertEquals(2, deps.mergeStates(equivClasses, badPath));
+		Assert.assertEquals(equivClasses.find(0), equivClasses.find(1));
+		Assert.assertEquals(equivClasses.find(2), equivClasses.find(3));
+		Assert.assertFalse(equivClasses.find(4).equals(equivClasses.find(5)));
+		Assert.assertFalse(equivClasses.find(6).equals(equivClasses.find(7)));
+	}
+
+	@Test
+	public void testUntested() throws TimeoutException
+	{
+		//[2,3] was never tested, so neither it nor [0,1] can be merged
+		DependencyGraph deps = new DependencyGraph();
+		deps.addDependency(StatePairSet.pack(0, 1), StatePairSet.pack(2, 3));
+		Assert.assertTrue(deps.isTested(StatePairSet.pack(0, 1)));
+		Assert.assertFalse(deps.isTested(StatePairSet.pack(2, 3)));
+		DisjointSets<Integer> equivClasses = states(4);
+		Assert.assertEquals(0, deps.mergeStates(equivClasses, new StatePairSet()));
+		Assert.assertEquals(4, equivClasses.size());
+
+		equivClasses.union(2, 3); //an already merged dependency is fine
+		Assert.assertEquals(1, deps.mergeStates(equivClasses, new StatePairSet()));
+		Assert.assertEquals(equivClasses.find(0), equivClasses.find(1));
+	}
+
+	@Test
+	public void testMergeAndPrune() throws TimeoutException
+	{
+		//[0,1] waits on [2,3] in a first test, a later test settles [2,3]
+		DependencyGraph deps = new DependencyGraph();
+		long a = StatePairSet.pack(0, 1);
+		long b = StatePairSet.pack(2, 3);
+		long c = StatePairSet.pack(4, 5);
+		long bad = StatePairSet.pack(6, 7);
+		deps.addDependency(a, b);
+		deps.addDependency(c, bad);
+		StatePairSet badPath = new StatePairSet();
+		badPath.add(bad);
+		DisjointSets<Integer> equivClasses = states(8);
+		Assert.assertEquals(0, deps.mergeAndPrune(equivClasses, badPath, new StatePairSet()));
+		Assert.assertEquals(2, deps.size()); //[4,5] and [6,7] will never be merged
+		Assert.assertFalse(deps.contains(c));
+
+		StatePairSet testedPairs = new StatePairSet();
+		StatePairSet untestedPairs = new StatePairSet();
+		Assert.assertTrue(deps.collectClosure(a, equivClasses, new StatePairSet(), testedPairs, untestedPairs));
+		Assert.assertTrue(testedPairs.contains(a));
+		Assert.assertTrue(untestedPairs.contains(b));
+
+		deps.addDependency(b, a);
+		Assert.assertEquals(2, deps.mergeAndPrune(equivClasses, new StatePairSet(), new StatePairSet()));
+		Assert.assertEquals(equivClasses.find(0), equivClasses.find(1));
+		Assert.assertEquals(equivClasses.find(2), equivClasses.find(3));
+		Assert.assertEquals(0, deps.size());
+	}
+
+	@Test
+	public void testClear()
+	{
+		DependencyGraph deps = new DependencyGraph();
+		for (int i = 0; i < 100; i++)
+		{
+			deps.addDependency(StatePairSet.pack(i, i+1), StatePairSet.pack(i+1, i+2));
+		}
+		Assert.assertEquals(101, deps.size());
+		deps.clear();
+		Assert.assertEquals(0, deps.size());
+		Assert.assertFalse(deps.contains(StatePairSet.pack(0, 1)));
+		deps.addDependency(StatePairSet.pack(0, 1), StatePairSet.pack(5, 6));
+		Assert.assertTrue(deps.contains(StatePairSet.pack(5, 6)));
+		Assert.assertFalse(deps.contains(StatePairSet.pack(1, 2)));
+		Assert.assertEquals(2, deps.size());
+	}
+}
@@ -1,5 +1,8 @@
 package test;
 import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
 import junit.framework.Assert;
 
 import org.junit.Before;
@@ -54,6 +57,16 @@ public class TestDisjointSets {
 		sets.union(4, 5);
 		sets.union(2, 4);
 		Assert.assertEquals(7, sets.size());
+		sets.union(1, 5); //already in the same set
+		Assert.assertEquals(7, sets.size());
+	}
+	
+	@Test
+	public void testCollectionConstructor()
+	{
+		DisjointSets<Integer> newSets = new DisjointSets<Integer>(Arrays.asList(3, 4, 5));
+		Assert.assertEquals(3, newSets.size());
+		Assert.assertEquals(3, newSets.getSets().size());
 	}
 	
 	@Test
@@ -22,18 +22,28 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 
 import minimization.DebugException;
+import minimization.HopcroftMinimization;
 import minimization.MinimizationAlgorithm;
+import minimization.MinimizationCache;
+import minimization.MinimizationStats;
 import minimization.MooreMinimization;
+import minimization.RegexPipeline;
 import minimization.incremental.IncrSimpleNEQ;
 import minimization.incremental.IncrWithDependencyChecks;
+import minimization.incremental.IncrWithWitnesses;
 import minimization.incremental.IncrementalMinimization;
 import minimization.incremental.IncrementalNaive;
+import minimization.incremental.IncrementalParallel;
 import minimization.incremental.IncrementalRecWithDeps;
 import minimization.incremental.IncrementalRecursive;
+import minimization.incremental.ProgressListener;
+import minimization.incremental.SFADelta;
 import minimization.incremental.TimeBudgetExceededException;
 
 import org.junit.Assert;
@@ -57,6 +67,9 @@ public class TestIncrementalMinimization
 {
 	public static final String REGEXLIB_FILE = "regex/regexlib-SFA.txt";
 	public static final int TRIAL_COUNT = 5;
+	public static final String FIXTURE_REGEX = "(\\s*\\S*){2}(ipsum)(\\S*\\s*){2}";
+	public static final long FIXTURE_SEED = 42;
+	public static final int RANDOM_FIXTURE_COUNT = 4;
 
 	@Test
 	public void testMyAut() throws TimeoutException
@@ -194,6 +207,469 @@ public class TestIncrementalMinimization
 		System.out.println(finishTime.toString());		
 	}
 	
+	private List<SFA<CharPred, Character>> minimizationFixtures(UnaryCharIntervalSolver ba) throws TimeoutException
+	{
+		//the regex the algorithm tests started from, plus random automata made of two near copies of one automaton
+		List<SFA<CharPred, Character>> fixtures = new ArrayList<SFA<CharPred, Character>>();
+		SFA<CharPred, Character> aut = (new SFAprovider(FIXTURE_REGEX, ba)).getSFA();
+		fixtures.add(aut.determinize(ba).mkTotal(ba));
+		Random random = new Random(FIXTURE_SEED);
+		for (int i = 0; i < RANDOM_FIXTURE_COUNT; i++)
+		{
+			fixtures.add(nearDuplicateAut(random, 3 + 2*i, ba));
+		}
+		return fixtures;
+	}
+	
+	private SFA<CharPred, Character> nearDuplicateAut(Random random, int stateCount, UnaryCharIntervalSolver ba)
+			throws TimeoutException
+	{
+		//states i and i+stateCount are copies of each other, moves cross between the copies at random, then one
+		//state of the second copy changes finality so that only some of the copies stay equivalent
+		List<CharPred> guards = Arrays.asList(new CharPred('a', 'h'), new CharPred('i', 'p'), new CharPred('q', 'z'));
+		boolean[] isFinal = new boolean[stateCount];
+		int[][] targets = new int[stateCount][guards.size()];
+		for (int state = 0; state < stateCount; state++)
+		{
+			isFinal[state] = random.nextBoolean();
+			for (int i = 0; i < guards.size(); i++)
+			{
+				targets[state][i] = random.nextInt(stateCount);
+			}
+		}
+		int flipped = stateCount + random.nextInt(stateCount);
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+		for (int state = 0; state < 2*stateCount; state++)
+		{
+			if (isFinal[state % stateCount] != (state == flipped))
+			{
+				finalStates.add(state);
+			}
+			for (int i = 0; i < guards.size(); i++)
+			{
+				int copy = random.nextBoolean() ? stateCount : 0;
+				transitions.add(new SFAInputMove<CharPred, Character>(state, targets[state % stateCount][i] + copy,
+						guards.get(i)));
+			}
+		}
+		return SFA.MkSFA(transitions, 0, finalStates, ba).mkTotal(ba);
+	}
+	
+	private List<MinimizationAlgorithm<CharPred, Character>> testFixtures(
+			MinimizationCache.AlgorithmFactory<CharPred, Character> factory) throws TimeoutException
+	{
+		//minimizes every fixture with an algorithm from factory and returns the algorithms for further checks
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		List<MinimizationAlgorithm<CharPred, Character>> algorithms = 
+				new ArrayList<MinimizationAlgorithm<CharPred, Character>>();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			MinimizationAlgorithm<CharPred, Character> minAlg = factory.make(aut, ba);
+			testMin(minAlg, aut.minimize(ba), ba, System.nanoTime());
+			algorithms.add(minAlg);
+		}
+		return algorithms;
+	}
+	
+	@Test
+	public void testRecDepsSoundness() throws TimeoutException
+	{
+		/* The test of [0,1] explores [10,11], then [2,3], then [6,7], which leads back to [0,1]. [2,3] and
+		 * [10,11] depend on each other, and [2,3] depends on [6,7]. [0,1] then fails on [4,5], so [6,7] and with
+		 * it [2,3] and [10,11] are not equivalent. The dependency of [2,3] on [6,7] has to be recorded even though
+		 * [6,7] was first seen below [2,3], or the cycle of [2,3] and [10,11] looks closed and gets merged.
+		 * Both orders of a and b are tried, since the order the moves are explored in decides what is recorded.
+		 */
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		int[][] moves = {{0,0,10}, {0,1,4}, {1,0,11}, {1,1,5}, {10,0,2}, {10,1,3}, {11,0,3}, {11,1,2},
+				{2,0,10}, {2,1,6}, {3,0,11}, {3,1,7}, {6,0,0}, {7,0,1}};
+		for (String chars : Arrays.asList("ab", "ba"))
+		{
+			Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+			for (int[] move : moves)
+			{
+				transitions.add(new SFAInputMove<CharPred, Character>(move[0], move[2],
+						new CharPred(chars.charAt(move[1]))));
+			}
+			SFA<CharPred, Character> aut = SFA.MkSFA(transitions, 0, Arrays.asList(4, 10, 11), ba).mkTotal(ba);
+			SFA<CharPred, Character> stdMinAut = aut.minimize(ba);
+			SFA<CharPred, Character> recDepsMinAut = new IncrementalRecWithDeps<CharPred, Character>(aut, ba).minimize();
+			Assert.assertTrue(SFA.areEquivalent(recDepsMinAut, stdMinAut, ba));
+			Assert.assertEquals(stdMinAut.stateCount(), recDepsMinAut.stateCount());
+			SFA<CharPred, Character> sharedMinAut = new IncrementalRecWithDeps<CharPred, Character>(aut, ba, true).minimize();
+			Assert.assertTrue(SFA.areEquivalent(sharedMinAut, stdMinAut, ba));
+			Assert.assertEquals(stdMinAut.stateCount(), sharedMinAut.stateCount());
+		}
+	}
+	
+	@Test
+	public void testSharedDep() throws TimeoutException
+	{
+		testFixtures(new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+		{
+			public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+					BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+			{
+				return new IncrWithDependencyChecks<CharPred, Character>(aut, ba, true);
+			}
+		});
+		testFixtures(new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+		{
+			public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+					BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+			{
+				return new IncrementalRecWithDeps<CharPred, Character>(aut, ba, true);
+			}
+		});
+	}
+	
+	@Test
+	public void testWitnesses() throws TimeoutException
+	{
+		long wordsRun = 0;
+		for (MinimizationAlgorithm<CharPred, Character> witMin : testFixtures(
+				new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+		{
+			public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+					BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+			{
+				return new IncrWithWitnesses<CharPred, Character>(aut, ba);
+			}
+		}))
+		{
+			wordsRun += ((IncrWithWitnesses<CharPred, Character>) witMin).getWordsRun();
+		}
+		Assert.assertTrue(wordsRun > 0);
+	}
+	
+	private static class ExposedWitnesses extends IncrWithWitnesses<CharPred, Character>
+	{
+		//makes the word bookkeeping of IncrWithWitnesses reachable from the tests
+		
+		public ExposedWitnesses(SFA<CharPred, Character> aut, UnaryCharIntervalSolver ba) throws TimeoutException
+		{
+			super(aut, ba);
+		}
+		
+		public List<Character> suffix(Integer p, Integer q) throws TimeoutException
+		{
+			return separatingSuffix(p, q);
+		}
+		
+		public void refuteWith(Integer p, Integer q, List<Character> word) throws TimeoutException
+		{
+			refute(p, q, word);
+		}
+		
+		public boolean knownNotEqual(Integer p, Integer q)
+		{
+			return isKnownNotEqual(p, q);
+		}
+	}
+	
+	private boolean acceptsFrom(SFA<CharPred, Character> aut, Integer state, List<Character> word,
+			UnaryCharIntervalSolver ba) throws TimeoutException
+	{
+		for (Character c : word)
+		{
+			Integer next = null;
+			for (SFAInputMove<CharPred, Character> move : aut.getInputMovesFrom(state))
+			{
+				if (ba.HasModel(move.guard, c))
+				{
+					next = move.to;
+					break;
+				}
+			}
+			if (next == null)
+			{
+				return false;
+			}
+			state = next;
+		}
+		return aut.isFinalState(state);
+	}
+	
+	@Test
+	public void testSeparatingWords() throws TimeoutException
+	{
+		//3 goes to 0 on a and to 1 on b, 0 and 1 both reach the final state 2 in one step, 0 on a and 1 on b
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(0, 2, new CharPred('a')));
+		transitions.add(new SFAInputMove<CharPred, Character>(1, 2, new CharPred('b')));
+		transitions.add(new SFAInputMove<CharPred, Character>(3, 0, new CharPred('a')));
+		transitions.add(new SFAInputMove<CharPred, Character>(3, 1, new CharPred('b')));
+		SFA<CharPred, Character> aut = SFA.MkSFA(transitions, 3, Arrays.asList(2), ba).mkTotal(ba);
+		ExposedWitnesses witMin = new ExposedWitnesses(aut, ba);
+		aut = witMin.getAutomaton();
+		
+		//0 and 1 are the same distance from 2, only a word run from both tells them apart
+		Assert.assertFalse(witMin.knownNotEqual(0, 1));
+		Assert.assertNull(witMin.suffix(0, 1));
+		witMin.refuteWith(0, 1, Arrays.asList('a'));
+		Assert.assertTrue(witMin.knownNotEqual(0, 1)); //neq is still empty, so the signatures differ
+		List<Character> suffix = witMin.suffix(0, 1);
+		Assert.assertNotNull(suffix);
+		Assert.assertTrue(acceptsFrom(aut, 0, suffix, ba) != acceptsFrom(aut, 1, suffix, ba));
+		
+		//states at different distances are told apart by a shortest word from the nearer one
+		suffix = witMin.suffix(0, 3);
+		Assert.assertTrue(acceptsFrom(aut, 0, suffix, ba) != acceptsFrom(aut, 3, suffix, ba));
+	}
+	
+	@Test
+	public void testParallel() throws TimeoutException
+	{
+		testFixtures(new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+		{
+			public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+					BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+			{
+				return new IncrementalParallel<CharPred, Character>(aut, ba, 4);
+			}
+		});
+	}
+	
+	@Test
+	public void testHopcroft() throws TimeoutException
+	{
+		testFixtures(new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+		{
+			public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+					BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+			{
+				return new HopcroftMinimization<CharPred, Character>(aut, ba);
+			}
+		});
+		
+		//Hopcroft finishes what incremental minimization could not within its budget
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			SFA<CharPred, Character> stdMinAut = aut.minimize(ba);
+			IncrementalMinimization<CharPred, Character> incrMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			SFA<CharPred, Character> fallbackMinAut = incrMin.minimizeWithFallback(0);
+			Assert.assertTrue(SFA.areEquivalent(fallbackMinAut, stdMinAut, ba));
+			Assert.assertEquals(stdMinAut.stateCount(), fallbackMinAut.stateCount());
+			
+			//but not past the overall timeout
+			try
+			{
+				new IncrementalMinimization<CharPred, Character>(aut,ba).minimizeWithFallback(0, -1);
+				Assert.fail("fallback ran past its timeout");
+			}
+			catch (TimeoutException e)
+			{
+				//expected
+			}
+		}
+	}
+	
+	@Test
+	public void testDelta() throws TimeoutException
+	{
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			IncrementalMinimization<CharPred, Character> incrMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			incrMin.minimize();
+			
+			//flip finality of the initial state, then redirect one of its moves to itself
+			SFA<CharPred, Character> curAut = incrMin.getAutomaton();
+			Integer initial = curAut.getInitialState();
+			SFADelta<CharPred, Character> finalityDelta = new SFADelta<CharPred, Character>();
+			if (curAut.isFinalState(initial))
+			{
+				finalityDelta.makeNonFinal(initial);
+			}
+			else
+			{
+				finalityDelta.makeFinal(initial);
+			}
+			SFAInputMove<CharPred, Character> move = curAut.getInputMovesFrom(initial).iterator().next();
+			SFADelta<CharPred, Character> moveDelta = new SFADelta<CharPred, Character>();
+			moveDelta.removeMove(initial, move.to);
+			moveDelta.addMove(initial, initial, move.guard);
+			for (SFADelta<CharPred, Character> delta : Arrays.asList(finalityDelta, moveDelta))
+			{
+				SFA<CharPred, Character> editedAut = delta.applyTo(incrMin.getAutomaton(), ba);
+				SFA<CharPred, Character> stdMinAut = editedAut.minimize(ba);
+				incrMin = incrMin.applyDelta(delta);
+				SFA<CharPred, Character> incrMinAut = incrMin.minimize();
+				Assert.assertTrue(SFA.areEquivalent(incrMinAut, stdMinAut, ba));
+				Assert.assertEquals(stdMinAut.stateCount(), incrMinAut.stateCount());
+			}
+		}
+	}
+	
+	@Test
+	public void testDeltaVariants() throws TimeoutException
+	{
+		//applyDelta keeps the kind of minimizer and its options
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			List<IncrementalMinimization<CharPred, Character>> variants =
+					new ArrayList<IncrementalMinimization<CharPred, Character>>();
+			variants.add(new IncrementalNaive<CharPred, Character>(aut, ba, true));
+			variants.add(new IncrementalNaive<CharPred, Character>(aut, ba, ForkJoinPool.commonPool()));
+			variants.add(new IncrementalRecursive<CharPred, Character>(aut, ba));
+			variants.add(new IncrementalRecWithDeps<CharPred, Character>(aut, ba));
+			variants.add(new IncrWithDependencyChecks<CharPred, Character>(aut, ba));
+			variants.add(new IncrWithWitnesses<CharPred, Character>(aut, ba));
+			variants.add(new IncrSimpleNEQ<CharPred, Character>(aut, ba));
+			variants.add(new IncrementalParallel<CharPred, Character>(aut, ba, 2));
+			for (IncrementalMinimization<CharPred, Character> incrMin : variants)
+			{
+				incrMin.minimize();
+				Integer initial = incrMin.getAutomaton().getInitialState();
+				SFADelta<CharPred, Character> delta = new SFADelta<CharPred, Character>();
+				if (incrMin.getAutomaton().isFinalState(initial))
+				{
+					delta.makeNonFinal(initial);
+				}
+				else
+				{
+					delta.makeFinal(initial);
+				}
+				SFA<CharPred, Character> stdMinAut = delta.applyTo(incrMin.getAutomaton(), ba).minimize(ba);
+				IncrementalMinimization<CharPred, Character> next = incrMin.applyDelta(delta);
+				Assert.assertEquals(incrMin.getClass(), next.getClass());
+				SFA<CharPred, Character> incrMinAut = next.minimize();
+				Assert.assertTrue(SFA.areEquivalent(incrMinAut, stdMinAut, ba));
+				Assert.assertEquals(stdMinAut.stateCount(), incrMinAut.stateCount());
+			}
+		}
+	}
+	
+	@Test
+	public void testStats() throws TimeoutException
+	{
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			IncrementalMinimization<CharPred, Character> incrMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			SFA<CharPred, Character> incrMinAut = incrMin.minimize();
+			MinimizationStats stats = incrMin.getStats();
+			long n = aut.stateCount();
+			Assert.assertEquals(stats.getPairsTested(), stats.getEquivTestsPassed() + stats.getEquivTestsFailed());
+			Assert.assertTrue(stats.getPairsTested() <= n*(n-1)/2);
+			Assert.assertTrue(stats.getUnions() >= aut.stateCount() - incrMinAut.stateCount()); //one per merge at least
+			if (incrMinAut.stateCount() < aut.stateCount())
+			{
+				Assert.assertTrue(stats.getEquivTestsPassed() > 0);
+				Assert.assertTrue(stats.getMaxDepth() >= 1);
+			}
+			Assert.assertTrue(stats.getAverageDepth() <= stats.getMaxDepth());
+			Assert.assertTrue(stats.getSatCalls() > 0);
+			Assert.assertTrue(stats.getAndCalls() > 0);
+			Assert.assertTrue(stats.getPhaseTimes().keySet().containsAll(Arrays.asList("construct", "tests", "merge")));
+			Assert.assertEquals(0, stats.getBudgetOverrun());
+			
+			//a run out of budget reports how far past its deadline it stopped
+			IncrementalMinimization<CharPred, Character> budgetMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			try
+			{
+				budgetMin.minimize(0);
+				Assert.assertEquals(0, budgetMin.getStats().getBudgetOverrun());
+			}
+			catch (TimeBudgetExceededException e)
+			{
+				Assert.assertTrue(budgetMin.getStats().getBudgetOverrun() > 0);
+			}
+			
+			//totals of several runs
+			MinimizationAlgorithm<CharPred, Character> mooreMin = new MooreMinimization<CharPred, Character>(aut, ba);
+			mooreMin.minimize();
+			MinimizationStats total = new MinimizationStats();
+			total.addAll(stats);
+			total.addAll(mooreMin.getStats());
+			Assert.assertEquals(stats.getPairsTested() + mooreMin.getStats().getPairsTested(), total.getPairsTested());
+			Assert.assertEquals(stats.getSatCalls() + mooreMin.getStats().getSatCalls(), total.getSatCalls());
+			Assert.assertEquals(Math.max(stats.getMaxDepth(), mooreMin.getStats().getMaxDepth()), total.getMaxDepth());
+		}
+	}
+	
+	@Test
+	public void testProgressListener() throws TimeoutException, DebugException
+	{
+		//the listener hears of every merge, the record is only kept when asked for
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		for (SFA<CharPred, Character> aut : minimizationFixtures(ba))
+		{
+			final int[] merges = new int[1];
+			ProgressListener listener = new ProgressListener()
+			{
+				public void progress(long elapsedTime, int classCount)
+				{
+					merges[0]++;
+				}
+			};
+			IncrementalMinimization<CharPred, Character> incrMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			incrMin.setProgressListener(listener);
+			incrMin.minimize();
+			Assert.assertTrue(incrMin.getRecordSeries().isEmpty());
+			int unrecordedMerges = merges[0];
+			merges[0] = 0;
+			incrMin = new IncrementalMinimization<CharPred, Character>(aut,ba);
+			incrMin.setProgressListener(listener);
+			incrMin.minimize(Long.MAX_VALUE, true, false);
+			Assert.assertEquals(unrecordedMerges, merges[0]);
+			Assert.assertEquals(merges[0], incrMin.getRecordSeries().size());
+		}
+	}
+	
+	@Test
+	public void testPipeline() throws TimeoutException, InterruptedException
+	{
+		List<String> regexList = Arrays.asList("(\\s*\\S*){2}(ipsum)(\\S*\\s*){2}", "[0-9]{3}-[0-9]{4}", "(a|b)*abb",
+				"(ab", "\\d+(\\.\\d+)?");
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		RegexPipeline pipeline = new RegexPipeline(ba);
+		pipeline.setThreads(2, 2, 2);
+		pipeline.setQueueCapacity(1); //every stage is full most of the time
+		pipeline.setMinimize(true, Long.MAX_VALUE);
+		List<RegexPipeline.Result> results = pipeline.runAll(regexList);
+		Assert.assertEquals(regexList.size(), results.size());
+		for (int i = 0; i < results.size(); i++)
+		{
+			RegexPipeline.Result result = results.get(i);
+			Assert.assertEquals(i, result.getIndex());
+			if (!result.isUsable())
+			{
+				continue;
+			}
+			SFA<CharPred, Character> aut = (new SFAprovider(regexList.get(i), ba)).getSFA();
+			SFA<CharPred, Character> stdMinAut = aut.determinize(ba).mkTotal(ba).minimize(ba);
+			Assert.assertTrue(SFA.areEquivalent(result.getMinAutomaton(), stdMinAut, ba));
+			Assert.assertEquals(stdMinAut.stateCount(), result.getMinAutomaton().stateCount());
+		}
+	}
+	
+	@Test
+	public void testPipelineOverflow() throws InterruptedException
+	{
+		//a regex nested too deeply for the parser fails on its own, the items after it are still built
+		StringBuilder nested = new StringBuilder();
+		for (int i = 0; i < 200000; i++)
+		{
+			nested.append('(');
+		}
+		nested.append('a');
+		for (int i = 0; i < 200000; i++)
+		{
+			nested.append(')');
+		}
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		RegexPipeline pipeline = new RegexPipeline(ba);
+		Assert.assertFalse(pipeline.build(nested.toString()).isUsable());
+		List<RegexPipeline.Result> results = pipeline.runAll(Arrays.asList(nested.toString(), "(a|b)*abb"));
+		Assert.assertFalse(results.get(0).isUsable());
+		Assert.assertTrue(results.get(1).isUsable());
+	}
+	
 	private double arrayAvg(double[] arr)
 	{
 		if (arr.length <= 0)
@@ -208,36 +684,24 @@ public class TestIncrementalMinimization
 		return sum/arr.length;
 	}
 	
-	private void compareRuntimeFromRegex(List<String> regexList, String outfile) throws TimeoutException, IOException
+	private void compareRuntimeFromRegex(List<String> regexList, String outfile) 
+			throws TimeoutException, IOException, InterruptedException
 	{
 		//Given a list of regex, runs all minimization algorithms on each and output results to the given file.
 		
 		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
 		//System.out.println(regexList.size());
 		ArrayList<String> messageList = new ArrayList<String>();
-		long timeout = 3600000; //determinization timeout = 1 hour
+		RegexPipeline pipeline = new RegexPipeline(ba);
+		pipeline.setMaxStates(400);
 		for (String regex : regexList)
 		{
-			SFA<CharPred, Character> aut = (new SFAprovider(regex, ba)).getSFA();
-			try
-			{
-				aut = aut.determinize(ba, timeout);
-				aut = aut.mkTotal(ba);
-			}
-			catch(TimeoutException e)
-			{
-				continue;
-			}
-			catch(OutOfMemoryError e)
-			{
-				System.gc();
-				continue;
-			}
-			
-			if(aut.stateCount() > 400)
+			RegexPipeline.Result built = pipeline.build(regex);
+			if (!built.isUsable())
 			{
 				continue;
 			}
+			SFA<CharPred, Character> aut = built.getAutomaton();
 			System.out.println("Determinized");
 			
 			System.out.println("Standard minimizing...");
@@ -367,7 +831,7 @@ public class TestIncrementalMinimization
 	}
 	
 	@Test
-	public void testRegexLib() throws TimeoutException, IOException
+	public void testRegexLib() throws TimeoutException, IOException, InterruptedException
 	{
 		System.out.println("=======================");
 		System.out.println("STARTING REGEXLIB TEST");
@@ -391,7 +855,7 @@ public class TestIncrementalMinimization
 	}
 	
 	@Test
-	public void test_powerEN_patterns() throws IOException, TimeoutException
+	public void test_powerEN_patterns() throws IOException, TimeoutException, InterruptedException
 	{
 		System.out.println("======================");
 		System.out.println("STARTING powerEN TEST");
@@ -449,7 +913,7 @@ public class TestIncrementalMinimization
 	}
 	
 	@Test
-	public void testBudget() throws TimeoutException, IOException
+	public void testBudget() throws TimeoutException, IOException, InterruptedException
 	{
 		//Similar to Regex test, but incremental minimization only given as long as 
 		
@@ -474,24 +938,15 @@ public class TestIncrementalMinimization
 		//regex converted to SFAs and minimized
 		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
 		ArrayList<String> messageList = new ArrayList<String>();
-		long timeout = 3600000; //determinization timeout = 1 hour
+		RegexPipeline pipeline = new RegexPipeline(ba);
 		for(String regex : regexList)
 		{
-			SFA<CharPred, Character> aut = (new SFAprovider(regex, ba)).getSFA();
-			try
+			RegexPipeline.Result built = pipeline.build(regex);
+			if (!built.isUsable())
 			{
-				aut = aut.determinize(ba, timeout);
-				aut = aut.mkTotal(ba);
-			}
-			catch(TimeoutException e)
-			{
-				continue;
-			}
-			catch(OutOfMemoryError e)
-			{
-				System.gc();
 				continue;
 			}
+			SFA<CharPred, Character> aut = built.getAutomaton();
 			System.out.println("Determinized.");
 			
 			//Standard minimiazation runs first
@@ -0,0 +1,78 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.IntDisjointSets;
+
+public class TestIntDisjointSets {
+
+	IntDisjointSets sets;
+
+	private void initialize()
+	{
+		sets = new IntDisjointSets(4); //smaller than the element count, forces the arrays to grow
+		for (int i = 0; i < 10; i++)
+		{
+			Assert.assertEquals(i, sets.make());
+		}
+	}
+
+	@Test
+	public void testFind()
+	{
+		initialize();
+		for (int i = 0; i < 10; i++)
+		{
+			Assert.assertEquals(i, sets.find(i));
+		}
+	}
+
+	@Test
+	public void testUnion()
+	{
+		initialize();
+		Assert.assertEquals(1, sets.union(1, 2));
+		Assert.assertEquals(1, sets.find(2));
+		sets.union(4, 5);
+		sets.union(2, 4);
+		Assert.assertTrue(sets.sameSet(1, 5));
+		Assert.assertFalse(sets.sameSet(1, 7));
+	}
+
+	@Test
+	public void testSize()
+	{
+		initialize();
+		Assert.assertEquals(10, sets.size());
+		sets.union(1, 2);
+		Assert.assertEquals(9, sets.size());
+		sets.union(2, 1);
+		Assert.assertEquals(9, sets.size());
+		sets.union(4, 5);
+		sets.union(2, 4);
+		sets.union(5, 1);
+		Assert.assertEquals(7, sets.size());
+		Assert.assertEquals(10, sets.elementCount());
+	}
+
+	@Test
+	public void testCopy()
+	{
+		initialize();
+		sets.union(1, 2);
+		IntDisjointSets newSets = new IntDisjointSets(sets);
+		newSets.union(3, 4);
+		Assert.assertTrue(newSets.sameSet(1, 2));
+		Assert.assertFalse(sets.sameSet(3, 4));
+		Assert.assertEquals(8, newSets.size());
+		Assert.assertEquals(9, sets.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissing()
+	{
+		initialize();
+		sets.find(10);
+	}
+
+}
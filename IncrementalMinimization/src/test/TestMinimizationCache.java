@@ -0,0 +1,133 @@
+package test;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+
+import minimization.CharPredCodec;
+import minimization.DebugException;
+import minimization.MinimizationAlgorithm;
+import minimization.MinimizationCache;
+import minimization.incremental.IncrementalMinimization;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+
+public class TestMinimizationCache {
+
+	UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+	
+	MinimizationCache.AlgorithmFactory<CharPred, Character> factory = 
+			new MinimizationCache.AlgorithmFactory<CharPred, Character>()
+	{
+		public MinimizationAlgorithm<CharPred, Character> make(SFA<CharPred, Character> aut,
+				BooleanAlgebra<CharPred, Character> ba) throws TimeoutException
+		{
+			return new IncrementalMinimization<CharPred, Character>(aut, ba);
+		}
+	};
+	
+	private SFA<CharPred, Character> makeAut(int offset, boolean redundant) throws TimeoutException
+	{
+		//a*b(a|b)* with a redundant state, or a*b(a*b)* if that state is not final, ids shifted by offset
+		CharPred a = new CharPred('a');
+		CharPred b = new CharPred('b');
+		Collection<SFAMove<CharPred, Character>> transitions = new LinkedList<SFAMove<CharPred, Character>>();
+		transitions.add(new SFAInputMove<CharPred, Character>(offset, offset, a));
+		transitions.add(new SFAInputMove<CharPred, Character>(offset, offset+1, b));
+		transitions.add(new SFAInputMove<CharPred, Character>(offset+1, offset+2, a));
+		transitions.add(new SFAInputMove<CharPred, Character>(offset+1, offset+1, b));
+		transitions.add(new SFAInputMove<CharPred, Character>(offset+2, offset+2, a));
+		transitions.add(new SFAInputMove<CharPred, Character>(offset+2, offset+1, b));
+		Collection<Integer> finalStates = redundant ? Arrays.asList(offset+1, offset+2) : Arrays.asList(offset+1);
+		SFA<CharPred, Character> aut = SFA.MkSFA(transitions, offset, finalStates, ba);
+		return aut.mkTotal(ba);
+	}
+	
+	@Test
+	public void testKey() throws TimeoutException, IOException
+	{
+		MinimizationCache<CharPred, Character> cache = 
+				new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10);
+		Assert.assertEquals(cache.canonicalKey(makeAut(0, true)), cache.canonicalKey(makeAut(50, true)));
+		Assert.assertFalse(cache.canonicalKey(makeAut(0, true)).equals(cache.canonicalKey(makeAut(0, false))));
+	}
+	
+	@Test
+	public void testMemoryTier() throws TimeoutException, DebugException, IOException
+	{
+		MinimizationCache<CharPred, Character> cache = 
+				new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10);
+		SFA<CharPred, Character> minAut = cache.minimize(makeAut(0, true), factory);
+		Assert.assertEquals(3, minAut.stateCount()); //start, accepting and sink state
+		SFA<CharPred, Character> cachedAut = cache.minimize(makeAut(50, true), factory);
+		Assert.assertSame(minAut, cachedAut);
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(1, cache.getMemoryHits());
+	}
+	
+	@Test
+	public void testDiskTier() throws TimeoutException, DebugException, IOException
+	{
+		File directory = File.createTempFile("sfacache", "");
+		directory.delete();
+		MinimizationCache<CharPred, Character> cache = 
+				new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10, directory);
+		SFA<CharPred, Character> minAut = cache.minimize(makeAut(0, true), factory);
+		
+		//a new cache, as after a restart, only finds the automaton on disk
+		cache = new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10, directory);
+		SFA<CharPred, Character> diskAut = cache.minimize(makeAut(50, true), factory);
+		Assert.assertEquals(1, cache.getDiskHits());
+		Assert.assertEquals(0, cache.getMisses());
+		Assert.assertEquals(minAut.stateCount(), diskAut.stateCount());
+		Assert.assertTrue(SFA.areEquivalent(minAut, diskAut, ba));
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	@Test
+	public void testUnreadableFile() throws TimeoutException, DebugException, IOException
+	{
+		File directory = File.createTempFile("sfacache", "");
+		directory.delete();
+		MinimizationCache<CharPred, Character> cache = 
+				new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10, directory);
+		cache.minimize(makeAut(0, true), factory);
+		for (File file : directory.listFiles())
+		{
+			Writer writer = new FileWriter(file);
+			writer.write("not an automaton\n");
+			writer.close();
+		}
+		
+		//the damaged file is a miss and gets replaced, so the next cache finds it again
+		cache = new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10, directory);
+		cache.minimize(makeAut(50, true), factory);
+		Assert.assertEquals(1, cache.getMisses());
+		cache = new MinimizationCache<CharPred, Character>(ba, new CharPredCodec(ba), 10, directory);
+		cache.minimize(makeAut(50, true), factory);
+		Assert.assertEquals(1, cache.getDiskHits());
+		Assert.assertEquals(1, directory.listFiles().length); //no temporary files left behind
+		for (File file : directory.listFiles())
+		{
+			file.delete();
+		}
+		directory.delete();
+	}
+
+}
@@ -0,0 +1,71 @@
+package test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import structures.MintermTree;
+import theory.characters.CharPred;
+import theory.intervals.UnaryCharIntervalSolver;
+
+public class TestMintermTree {
+
+	@Test
+	public void testMinterms() throws TimeoutException
+	{
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		CharPred ac = new CharPred('a', 'c');
+		CharPred bd = new CharPred('b', 'd');
+		ArrayList<CharPred> minterms = MintermTree.generate_minterms(Arrays.asList(ac, bd, ac), ba);
+		Assert.assertEquals(4, minterms.size()); //[a], [b-c], [d] and everything else
+		CharPred union = ba.False();
+		for (int i = 0; i < minterms.size(); i++)
+		{
+			for (int j = i+1; j < minterms.size(); j++)
+			{
+				Assert.assertFalse(ba.IsSatisfiable(ba.MkAnd(minterms.get(i), minterms.get(j))));
+			}
+			union = ba.MkOr(union, minterms.get(i));
+		}
+		Assert.assertTrue(ba.AreEquivalent(ba.True(), union));
+	}
+
+	@Test
+	public void testParallel() throws TimeoutException
+	{
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		ArrayList<CharPred> guards = new ArrayList<CharPred>();
+		for (char c = 'a'; c < 'a' + 2*MintermTree.PARALLEL_THRESHOLD; c++)
+		{
+			guards.add(new CharPred(c, (char) (c + 3)));
+		}
+		ArrayList<CharPred> minterms = MintermTree.generate_minterms(guards, ba);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ArrayList<CharPred> parallelMinterms;
+		try
+		{
+			parallelMinterms = MintermTree.generate_minterms_parallel(guards, ba, pool);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		Assert.assertEquals(minterms.size(), parallelMinterms.size());
+		for (int i = 0; i < minterms.size(); i++)
+		{
+			Assert.assertTrue(ba.AreEquivalent(minterms.get(i), parallelMinterms.get(i)));
+		}
+	}
+
+	@Test
+	public void testNoGuards() throws TimeoutException
+	{
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		ArrayList<CharPred> minterms = MintermTree.generate_minterms(new ArrayList<CharPred>(), ba);
+		Assert.assertEquals(1, minterms.size());
+		Assert.assertTrue(ba.AreEquivalent(ba.True(), minterms.get(0)));
+	}
+}
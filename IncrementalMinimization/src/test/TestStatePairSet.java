@@ -0,0 +1,110 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.StatePairSet;
+
+public class TestStatePairSet {
+
+	StatePairSet pairs;
+
+	private void initialize()
+	{
+		pairs = new StatePairSet();
+		for (int i = 0; i < 100; i++)
+		{
+			pairs.add(i, i+1);
+		}
+	}
+
+	@Test
+	public void testPack()
+	{
+		long pair = StatePairSet.pack(3, 70000);
+		Assert.assertEquals(3, StatePairSet.first(pair));
+		Assert.assertEquals(70000, StatePairSet.second(pair));
+		Assert.assertFalse(pair == StatePairSet.pack(70000, 3));
+	}
+
+	@Test
+	public void testContains()
+	{
+		initialize();
+		Assert.assertEquals(100, pairs.size());
+		for (int i = 0; i < 100; i++)
+		{
+			Assert.assertTrue(pairs.contains(i, i+1));
+			Assert.assertFalse(pairs.contains(i+1, i));
+		}
+		Assert.assertFalse(pairs.add(5, 6));
+		Assert.assertEquals(100, pairs.size());
+		Assert.assertTrue(pairs.add(0, 0));
+		Assert.assertTrue(pairs.contains(0, 0));
+		Assert.assertEquals(101, pairs.size());
+	}
+
+	@Test
+	public void testRemove()
+	{
+		initialize();
+		for (int i = 0; i < 100; i += 2)
+		{
+			Assert.assertTrue(pairs.remove(StatePairSet.pack(i, i+1)));
+		}
+		Assert.assertFalse(pairs.remove(StatePairSet.pack(0, 1)));
+		Assert.assertEquals(50, pairs.size());
+		for (int i = 0; i < 100; i++)
+		{
+			Assert.assertEquals(i % 2 == 1, pairs.contains(i, i+1));
+		}
+	}
+
+	@Test
+	public void testCopy()
+	{
+		initialize();
+		StatePairSet copy = new StatePairSet(pairs);
+		copy.add(200, 201);
+		Assert.assertEquals(101, copy.size());
+		Assert.assertEquals(100, pairs.size());
+		Assert.assertFalse(pairs.contains(200, 201));
+		Assert.assertEquals(100, pairs.toArray().length);
+		pairs.clear();
+		Assert.assertTrue(pairs.isEmpty());
+		Assert.assertTrue(copy.contains(50, 51));
+	}
+
+	@Test
+	public void testClear()
+	{
+		StatePairSet scratch = new StatePairSet(10000);
+		for (int round = 0; round < 3; round++)
+		{
+			for (int i = 0; i < 50; i++)
+			{
+				scratch.add(round, i);
+			}
+			scratch.remove(StatePairSet.pack(round, 0));
+			Assert.assertEquals(49, scratch.size());
+			Assert.assertEquals(49, scratch.toArray().length);
+			scratch.clear();
+			Assert.assertTrue(scratch.isEmpty());
+			Assert.assertFalse(scratch.contains(round, 1));
+		}
+		for (int i = 0; i < 5000; i++) //too many slots to track, clear falls back to the whole table
+		{
+			scratch.add(i, i);
+		}
+		scratch.clear();
+		for (int i = 0; i < 5000; i++)
+		{
+			Assert.assertFalse(scratch.contains(i, i));
+		}
+		initialize();
+		pairs.clear();
+		pairs.add(1, 2);
+		Assert.assertEquals(1, pairs.toArray().length);
+		Assert.assertEquals(StatePairSet.pack(1, 2), pairs.toArray()[0]);
+	}
+
+}
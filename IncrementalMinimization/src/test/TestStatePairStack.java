@@ -0,0 +1,76 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.StatePairSet;
+import structures.StatePairStack;
+
+public class TestStatePairStack {
+
+	@Test
+	public void testPushPop()
+	{
+		StatePairStack stack = new StatePairStack(2); //grows past its capacity
+		for (int i = 0; i < 10; i++)
+		{
+			stack.push(StatePairSet.pack(i, i+1));
+		}
+		Assert.assertEquals(10, stack.depth());
+		Assert.assertEquals(StatePairSet.pack(9, 10), stack.peek());
+		Assert.assertEquals(StatePairSet.pack(9, 10), stack.pop());
+		Assert.assertFalse(stack.contains(StatePairSet.pack(9, 10)));
+		Assert.assertTrue(stack.contains(StatePairSet.pack(8, 9)));
+		Assert.assertEquals(9, stack.depth());
+	}
+
+	@Test
+	public void testTruncate()
+	{
+		StatePairStack stack = new StatePairStack();
+		for (int i = 0; i < 10; i++)
+		{
+			stack.push(StatePairSet.pack(i, i+1));
+		}
+		stack.truncate(4);
+		Assert.assertEquals(4, stack.depth());
+		Assert.assertTrue(stack.contains(StatePairSet.pack(3, 4)));
+		Assert.assertFalse(stack.contains(StatePairSet.pack(4, 5)));
+		StatePairSet path = new StatePairSet();
+		stack.addAllTo(path);
+		Assert.assertEquals(4, path.size());
+		stack.truncate(6); //deeper than the stack, nothing changes
+		Assert.assertEquals(4, stack.depth());
+		stack.clear();
+		Assert.assertEquals(0, stack.depth());
+		Assert.assertFalse(stack.contains(StatePairSet.pack(0, 1)));
+	}
+
+	@Test
+	public void testRepeated()
+	{
+		//a pair pushed twice stays on the stack until both occurrences are popped
+		long a = StatePairSet.pack(0, 1);
+		long b = StatePairSet.pack(2, 3);
+		StatePairStack stack = new StatePairStack();
+		stack.push(a);
+		Assert.assertFalse(stack.containsBelowTop(a));
+		stack.push(b);
+		Assert.assertTrue(stack.containsBelowTop(a));
+		Assert.assertFalse(stack.containsBelowTop(b));
+		stack.push(a);
+		Assert.assertTrue(stack.containsBelowTop(a)); //the earlier occurrence
+		Assert.assertTrue(stack.containsBelowTop(b));
+		stack.push(a);
+		Assert.assertTrue(stack.containsBelowTop(a));
+		stack.pop();
+		stack.pop();
+		Assert.assertTrue(stack.contains(a));
+		Assert.assertFalse(stack.containsBelowTop(b));
+		stack.pop();
+		Assert.assertTrue(stack.contains(a));
+		Assert.assertFalse(stack.containsBelowTop(a));
+		stack.pop();
+		Assert.assertFalse(stack.contains(a));
+		Assert.assertFalse(stack.containsBelowTop(a));
+	}
+}
@@ -0,0 +1,46 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.TimeSeries;
+
+public class TestTimeSeries {
+
+	@Test
+	public void testAdd()
+	{
+		TimeSeries series = new TimeSeries(2);
+		Assert.assertTrue(series.isEmpty());
+		for (int i = 0; i < 10; i++) //grows past its capacity
+		{
+			series.add(1000L + i, 10 - i);
+		}
+		Assert.assertEquals(10, series.size());
+		for (int i = 0; i < 10; i++)
+		{
+			Assert.assertEquals(1000L + i, series.time(i));
+			Assert.assertEquals(10 - i, series.value(i));
+		}
+	}
+
+	@Test
+	public void testClear()
+	{
+		TimeSeries series = new TimeSeries();
+		series.add(5, 3);
+		series.clear();
+		Assert.assertTrue(series.isEmpty());
+		series.add(7, 2);
+		Assert.assertEquals(1, series.size());
+		Assert.assertEquals(7, series.time(0));
+		Assert.assertEquals(2, series.value(0));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfBounds()
+	{
+		TimeSeries series = new TimeSeries();
+		series.add(5, 3);
+		series.time(1);
+	}
+}
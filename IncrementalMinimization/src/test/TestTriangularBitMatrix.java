@@ -0,0 +1,66 @@
+package test;
+import org.junit.Assert;
+import org.junit.Test;
+
+import structures.TriangularBitMatrix;
+
+public class TestTriangularBitMatrix {
+
+	@Test
+	public void testSet()
+	{
+		TriangularBitMatrix matrix = new TriangularBitMatrix(100);
+		Assert.assertTrue(matrix.set(3, 70));
+		Assert.assertFalse(matrix.set(70, 3)); //pairs are unordered
+		Assert.assertTrue(matrix.get(70, 3));
+		Assert.assertFalse(matrix.get(3, 71));
+		Assert.assertFalse(matrix.get(2, 70));
+	}
+
+	@Test
+	public void testIndex()
+	{
+		long index = 0;
+		for (int j = 1; j < 200; j++)
+		{
+			for (int i = 0; i < j; i++)
+			{
+				Assert.assertEquals(index, TriangularBitMatrix.index(i, j));
+				Assert.assertEquals(j, TriangularBitMatrix.row(index));
+				index++;
+			}
+		}
+	}
+
+	@Test
+	public void testNextSetIndex()
+	{
+		TriangularBitMatrix matrix = new TriangularBitMatrix(50);
+		Assert.assertEquals(-1, matrix.nextSetIndex(0));
+		matrix.set(10, 40);
+		matrix.set(0, 1);
+		Assert.assertEquals(0, matrix.nextSetIndex(0));
+		Assert.assertEquals(TriangularBitMatrix.index(10, 40), matrix.nextSetIndex(1));
+		matrix.clearIndex(TriangularBitMatrix.index(10, 40));
+		Assert.assertEquals(-1, matrix.nextSetIndex(1));
+	}
+
+	@Test
+	public void testFirstUnsetInRow()
+	{
+		TriangularBitMatrix matrix = new TriangularBitMatrix(200);
+		long[] columns = new long[4];
+		for (int i : new int[] {5, 70, 130})
+		{
+			columns[i >>> 6] |= 1L << i;
+		}
+		Assert.assertEquals(5, matrix.firstUnsetInRow(150, columns));
+		matrix.set(5, 150);
+		Assert.assertEquals(70, matrix.firstUnsetInRow(150, columns));
+		matrix.set(70, 150);
+		Assert.assertEquals(130, matrix.firstUnsetInRow(150, columns));
+		Assert.assertEquals(-1, matrix.firstUnsetInRow(100, new long[] {0, 1L << 40})); //column 104 is past the row
+		matrix.set(130, 150);
+		Assert.assertEquals(-1, matrix.firstUnsetInRow(150, columns));
+	}
+}